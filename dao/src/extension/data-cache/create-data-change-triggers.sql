@@ -0,0 +1,66 @@
+-- Records changes of observations belonging to closed data chunks, so cached
+-- chunks get evicted before their time to live expires (see
+-- org.n52.series.db.dao.DataChunkCache).
+--
+-- Inserts are recorded only for observations older than the closing grace
+-- period, which has to match the data.cache.chunk.grace setting. Updates and
+-- deletes are always recorded. Value tables are included in case the schema
+-- contains them.
+create table if not exists series_data_change (
+    seriesid bigint not null primary key,
+    changed timestamp not null
+);
+
+create or replace function series_record_data_change(changed_series bigint) returns void as $$
+begin
+    update series_data_change set changed = clock_timestamp() where seriesid = changed_series;
+    if not found then
+        insert into series_data_change (seriesid, changed) values (changed_series, clock_timestamp());
+    end if;
+end;
+$$ language plpgsql;
+
+create or replace function series_record_observation_change() returns trigger as $$
+begin
+    if TG_OP = 'INSERT' then
+        if NEW.phenomenontimeend < clock_timestamp() - interval '1 hour' then
+            perform series_record_data_change(NEW.seriesid);
+        end if;
+        return null;
+    end if;
+    perform series_record_data_change(OLD.seriesid);
+    if TG_OP = 'UPDATE' and NEW.seriesid <> OLD.seriesid then
+        perform series_record_data_change(NEW.seriesid);
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create or replace function series_record_value_change() returns trigger as $$
+begin
+    perform series_record_data_change(o.seriesid)
+        from observation o
+        where o.observationid = OLD.observationid;
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists series_data_change on observation;
+create trigger series_data_change after insert or update or delete
+    on observation for each row execute procedure series_record_observation_change();
+
+do $$
+declare
+    value_table text;
+begin
+    foreach value_table in array array[
+            'numericvalue', 'countvalue', 'textvalue', 'categoryvalue', 'booleanvalue', 'profilevalue'] loop
+        if to_regclass(value_table) is not null then
+            execute format('drop trigger if exists series_data_change on %I', value_table);
+            execute format('create trigger series_data_change after update or delete '
+                    || 'on %I for each row execute procedure series_record_value_change()',
+                    value_table);
+        end if;
+    end loop;
+end;
+$$;
@@ -0,0 +1,39 @@
+-- Records changes of metadata tables, so cached metadata gets evicted before
+-- its time to live expires (see org.n52.series.db.MetadataCacheEvictor).
+--
+-- Triggers are created for existing tables only. Translation tables are
+-- included in case the schema contains them. Changes of the series table
+-- are recorded to rebuild the dataset filter index (see
+-- org.n52.series.db.dao.DatasetFilterIndex).
+create table if not exists series_metadata_change (
+    tablename varchar(255) not null primary key,
+    changed timestamp not null
+);
+
+create or replace function series_record_metadata_change() returns trigger as $$
+begin
+    update series_metadata_change set changed = clock_timestamp() where tablename = TG_TABLE_NAME;
+    if not found then
+        insert into series_metadata_change (tablename, changed) values (TG_TABLE_NAME, clock_timestamp());
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+do $$
+declare
+    metadata_table text;
+begin
+    foreach metadata_table in array array[
+            'procedure', 'sensorsystem', 'observableproperty', 'featureofinterest', 'featurerelation',
+            'featureparameter', 'offering', 'offeringrelation', 'unit',
+            'i18nprocedure', 'i18nobservableproperty', 'i18nfeatureofinterest', 'i18noffering', 'series'] loop
+        if to_regclass(metadata_table) is not null then
+            execute format('drop trigger if exists series_metadata_change on %I', metadata_table);
+            execute format('create trigger series_metadata_change after insert or update or delete or truncate '
+                    || 'on %I for each statement execute procedure series_record_metadata_change()',
+                    metadata_table);
+        end if;
+    end loop;
+end;
+$$;
@@ -0,0 +1,13 @@
+-- Indexes supporting the vertical range filter on profile data (verticalMin/verticalMax).
+--
+-- The filter selects child observations via their vertical parameters (e.g. depth,
+-- fromDepth, toDepth) and joins them with the profile observation they belong to.
+
+-- vertical parameters are looked up by name and then joined by observation
+create index parameternameobsidx on parameter (name, observationid);
+
+-- range scans on the vertical values
+create index numericparamvalueidx on numericparametervalue (value, parameterid);
+
+-- profile to child observation links
+create index profileobservationidx on profileobservation (observationid, childobservationid);
@@ -0,0 +1,5 @@
+-- Full text index on text observations (textSearch parameter on PostgreSQL).
+--
+-- The expression has to match the one used in queries, i.e. the 'simple'
+-- text search configuration.
+create index textvaluetsvidx on textvalue using gin (to_tsvector('simple', value));
@@ -36,17 +36,19 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class MetadataJsonEntity extends MetadataEntity<String> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MetadataJsonEntity.class);
 
+    /**
+     * @return the parsed value which is cached and shared across requests, so it must not be modified.
+     *         Jackson writes the tree directly without serializing it to a string first.
+     */
     @JsonGetter(value = "value")
     public JsonNode getJsonValue() {
-        ObjectMapper om = new ObjectMapper();
         try {
-            return om.readTree(getValue());
+            return ParsedJsonCache.getJsonTree(getPkid(), getValue());
         } catch (IOException e) {
             LOGGER.error("Could not parse to json ({}): {}", getName(), getValue(), e);
             return null;
@@ -34,19 +34,44 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.ParameterOutput;
 import org.n52.series.db.da.SessionAwareRepository;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 class MetadataRepository extends SessionAwareRepository {
 
+    private static final long DEFAULT_MAXIMUM_CACHED_SERIES = 10000;
+
+    private static final long DEFAULT_FIELD_NAMES_TIMEOUT_IN_MINUTES = 10;
+
+    // metadata names per series id
+    private final Cache<Long, List<String>> fieldNames;
+
+    MetadataRepository() {
+        this.fieldNames = CacheBuilder.newBuilder()
+                                      .maximumSize(DEFAULT_MAXIMUM_CACHED_SERIES)
+                                      .expireAfterWrite(DEFAULT_FIELD_NAMES_TIMEOUT_IN_MINUTES, TimeUnit.MINUTES)
+                                      .build();
+    }
+
     List<String> getFieldNames(String id) {
+        Long seriesId = parseId(id);
+        List<String> names = fieldNames.getIfPresent(seriesId);
+        if (names != null) {
+            return names;
+        }
         Session session = getSession();
         try {
             DatabaseMetadataDao dao = new DatabaseMetadataDao(session);
-            return dao.getMetadataNames(parseId(id));
+            names = dao.getMetadataNames(seriesId);
+            fieldNames.put(seriesId, names);
+            return names;
         } finally {
             returnSession(session);
         }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.io.extension.metadata;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches parsed JSON metadata values by metadata id. Entries keep the parsed string, so changed values are
+ * parsed again. The cache is bounded by the length of the cached strings.
+ */
+final class ParsedJsonCache {
+
+    // 8MB of source strings, the parsed trees retained in addition are typically several times larger
+    private static final long MAXIMUM_CACHED_CHARACTERS = 4L * 1024 * 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Cache<Long, ParsedJson> CACHE = CacheBuilder.newBuilder()
+                                                                     .maximumWeight(MAXIMUM_CACHED_CHARACTERS)
+                                                                     .weigher(ParsedJsonCache::weigh)
+                                                                     .build();
+
+    private ParsedJsonCache() {
+    }
+
+    private static int weigh(Long id, ParsedJson json) {
+        return json.source.length();
+    }
+
+    /**
+     * @param id
+     *        the metadata id, may be <code>null</code> for transient entities which are not cached
+     * @param value
+     *        the JSON string
+     * @return the parsed tree which is shared and must not be modified
+     * @throws IOException
+     *         if parsing fails
+     */
+    static JsonNode getJsonTree(Long id, String value) throws IOException {
+        if (id == null || value == null) {
+            return OBJECT_MAPPER.readTree(value);
+        }
+        ParsedJson cached = CACHE.getIfPresent(id);
+        if (cached != null && cached.source.equals(value)) {
+            return cached.tree;
+        }
+        JsonNode tree = OBJECT_MAPPER.readTree(value);
+        CACHE.put(id, new ParsedJson(value, tree));
+        return tree;
+    }
+
+    private static final class ParsedJson {
+
+        private final String source;
+
+        private final JsonNode tree;
+
+        private ParsedJson(String source, JsonNode tree) {
+            this.source = source;
+            this.tree = tree;
+        }
+    }
+
+}
@@ -37,21 +37,15 @@ import java.util.stream.Collectors;
 
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
 import org.n52.io.response.HierarchicalParameterOutput;
-import org.n52.io.response.PlatformOutput;
 import org.n52.io.response.ProcedureOutput;
-import org.n52.io.response.dataset.DatasetOutput;
-import org.n52.io.response.dataset.ValueType;
-import org.n52.series.db.DataAccessException;
-import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.ProcedureEntity;
-import org.n52.series.db.da.PlatformRepository;
 import org.n52.series.db.da.SessionAwareRepository;
-import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.ProcedureDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 
 class HierarchicalParameterRepository extends SessionAwareRepository {
 
@@ -60,43 +54,38 @@ class HierarchicalParameterRepository extends SessionAwareRepository {
 
     private static final String KEY_PROCEDURES = "procedures";
 
-    @Autowired
-    private PlatformRepository platformRepository;
-
     Map<String, Set<HierarchicalParameterOutput>> getExtras(String platformId,
             IoParameters parameters) {
         Session session = getSession();
         try {
-            DbQuery dbQuery = getDbQuery(parameters);
+            // the platform's datasets regardless of any spatial or platform type filter
+            DbQuery dbQuery = getDbQuery(parameters.extendWith(Parameters.PLATFORMS, platformId)
+                                                   .removeAllOf(Parameters.FILTER_PLATFORM_TYPES)
+                                                   .removeAllOf(Parameters.BBOX)
+                                                   .removeAllOf(Parameters.NEAR)
+                                                   .removeAllOf(Parameters.ODATA_FILTER));
             Map<String, Set<HierarchicalParameterOutput>> extras = new HashMap<>();
 
-            PlatformOutput platform = platformRepository.getInstance(platformId, dbQuery);
-            DatasetDao<DatasetEntity<?>> dao = new DatasetDao<>(session);
-            for (DatasetOutput dataset : platform.getDatasets()) {
-                String datasetId = ValueType.extractId(dataset.getId());
-                DatasetEntity<?> instance = dao.getInstance(Long.parseLong(datasetId), dbQuery);
-                addProcedureParents(instance, dbQuery, extras);
+            ProcedureDao dao = new ProcedureDao(session);
+            for (ProcedureEntity procedure : dao.getAllInstancesWithParents(dbQuery)) {
+                addProcedureParents(procedure, dbQuery, extras);
                 // TODO add further parents
             }
 
             return extras;
         } catch (NumberFormatException e) {
             LOGGER.debug("Could not convert id '{}' to long.", platformId, e);
-        } catch (DataAccessException e) {
-            LOGGER.error("Could not query hierarchical parameters for dataset with id '{}'",
-                    platformId, e);
         } finally {
             returnSession(session);
         }
         return Collections.emptyMap();
     }
 
-    private void addProcedureParents(DatasetEntity<?> instance, DbQuery dbQuery,
+    private void addProcedureParents(ProcedureEntity entity, DbQuery dbQuery,
             Map<String, Set<HierarchicalParameterOutput>> extras) {
         if (!extras.containsKey(KEY_PROCEDURES)) {
             extras.put(KEY_PROCEDURES, new HashSet<>());
         }
-        ProcedureEntity entity = instance.getProcedure();
         extras.get(KEY_PROCEDURES).addAll(getProcedureParents(entity, dbQuery));
     }
 
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.hibernate.Cache;
+import org.hibernate.HibernateException;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.SQLGrammarException;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.metadata.CollectionMetadata;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.StandardBasicTypes;
+import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Evicts cached metadata entities (second level cache) and cached metadata queries when metadata tables change.
+ * Changes are read from the <code>series_metadata_change</code> table which is maintained by triggers (see
+ * <code>dao/src/extension/metadata-cache</code>). Without that table cached entries expire by their time to
+ * live only.
+ * <p>
+ * Applications changing metadata may also call {@link #evict(String)} or {@link #evictAll()} directly.
+ * Components keeping state derived from metadata may register for tracked changes via
+ * {@link #addChangeListener(Consumer)}.
+ */
+public class MetadataCacheEvictor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataCacheEvictor.class);
+
+    /**
+     * The cache region of metadata queries.
+     */
+    public static final String METADATA_QUERY_REGION = "series.metadata.queries";
+
+    private static final String CHANGE_TABLE = "series_metadata_change";
+
+    private static final String COLUMN_TABLE_NAME = "tablename";
+
+    private static final String COLUMN_CHANGED = "changed";
+
+    private final ScheduledExecutorService executor;
+
+    private final long intervalInMillis;
+
+    private final List<Consumer<Set<String>>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private Timestamp lastChange;
+
+    @Autowired
+    private SessionFactory seriesSessionFactory;
+
+    /**
+     * @param interval
+     *        the interval to check for changes as ISO8601 period of fixed length
+     */
+    public MetadataCacheEvictor(String interval) {
+        this.intervalInMillis = Period.parse(interval)
+                                      .toStandardDuration()
+                                      .getMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metadata-cache-evictor");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::checkForChanges, 0, intervalInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        LOGGER.info("Closing '{}'", getClass().getSimpleName());
+        executor.shutdownNow();
+    }
+
+    /**
+     * Registers a listener notified with the names of the tables changed since the last check.
+     *
+     * @param listener
+     *        the listener to notify
+     */
+    public void addChangeListener(Consumer<Set<String>> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Evicts all cached metadata.
+     */
+    public void evictAll() {
+        LOGGER.debug("evict all cached metadata");
+        Cache cache = seriesSessionFactory.getCache();
+        cache.evictEntityRegions();
+        cache.evictCollectionRegions();
+        cache.evictQueryRegions();
+        cache.evictDefaultQueryRegion();
+    }
+
+    /**
+     * Evicts cached entities and collections mapped to the given table as well as cached metadata queries.
+     *
+     * @param table
+     *        the name of the changed table
+     */
+    public void evict(String table) {
+        String changedTable = normalize(table);
+        LOGGER.debug("evict cached metadata of table '{}'", changedTable);
+        Cache cache = seriesSessionFactory.getCache();
+        Set<String> changedEntities = new HashSet<>();
+        for (Map.Entry<String, ClassMetadata> entry : seriesSessionFactory.getAllClassMetadata()
+                                                                           .entrySet()) {
+            ClassMetadata metadata = entry.getValue();
+            if (metadata instanceof AbstractEntityPersister) {
+                AbstractEntityPersister persister = (AbstractEntityPersister) metadata;
+                if (persister.hasCache() && isMappedTo(persister.getTableName(), changedTable)) {
+                    changedEntities.add(entry.getKey());
+                    cache.evictEntityRegion(entry.getKey());
+                }
+            }
+        }
+        for (Map.Entry<String, CollectionMetadata> entry : seriesSessionFactory.getAllCollectionMetadata()
+                                                                                .entrySet()) {
+            CollectionMetadata metadata = entry.getValue();
+            if (metadata instanceof AbstractCollectionPersister) {
+                AbstractCollectionPersister persister = (AbstractCollectionPersister) metadata;
+                if (persister.hasCache()
+                        && (isMappedTo(persister.getTableName(), changedTable)
+                                || changedEntities.contains(persister.getOwnerEntityName()))) {
+                    cache.evictCollectionRegion(entry.getKey());
+                }
+            }
+        }
+        cache.evictQueryRegion(METADATA_QUERY_REGION);
+    }
+
+    private static boolean isMappedTo(String mappedTable, String table) {
+        String name = normalize(mappedTable);
+        // mapped table names may be qualified by the default schema
+        return name.equals(table)
+                || name.endsWith("." + table);
+    }
+
+    private static String normalize(String table) {
+        return table.replace("\"", "")
+                    .replace("`", "")
+                    .toLowerCase(Locale.ROOT);
+    }
+
+    @SuppressWarnings("unchecked")
+    void checkForChanges() {
+        Session session = seriesSessionFactory.openSession();
+        try {
+            SQLQuery query = lastChange == null
+                    ? session.createSQLQuery("select " + COLUMN_TABLE_NAME + ", " + COLUMN_CHANGED
+                            + " from " + CHANGE_TABLE)
+                    : session.createSQLQuery("select " + COLUMN_TABLE_NAME + ", " + COLUMN_CHANGED
+                            + " from " + CHANGE_TABLE + " where " + COLUMN_CHANGED + " > :lastChange");
+            if (lastChange != null) {
+                query.setTimestamp("lastChange", lastChange);
+            }
+            query.addScalar(COLUMN_TABLE_NAME, StandardBasicTypes.STRING)
+                 .addScalar(COLUMN_CHANGED, StandardBasicTypes.TIMESTAMP);
+            boolean initial = lastChange == null;
+            Set<String> changedTables = new HashSet<>();
+            for (Object[] change : (List<Object[]>) query.list()) {
+                Timestamp changed = (Timestamp) change[1];
+                if (lastChange == null || changed.after(lastChange)) {
+                    lastChange = changed;
+                }
+                if (!initial) {
+                    evict((String) change[0]);
+                    changedTables.add(normalize((String) change[0]));
+                }
+            }
+            if (!changedTables.isEmpty()) {
+                changeListeners.forEach(listener -> listener.accept(changedTables));
+            }
+            if (lastChange == null) {
+                // no changes recorded yet
+                lastChange = new Timestamp(0);
+            }
+        } catch (SQLGrammarException e) {
+            LOGGER.info("Metadata changes can not be tracked (see 'dao/src/extension/metadata-cache'), "
+                    + "cached metadata expires by time to live only.");
+            LOGGER.debug("Could not read table '{}'.", CHANGE_TABLE, e);
+            executor.shutdown();
+        } catch (HibernateException e) {
+            // e.g. connection failures, keep polling
+            LOGGER.warn("Could not check for metadata changes, retrying.", e);
+        } finally {
+            session.close();
+        }
+    }
+
+    public void setSeriesSessionFactory(SessionFactory seriesSessionFactory) {
+        this.seriesSessionFactory = seriesSessionFactory;
+    }
+
+}
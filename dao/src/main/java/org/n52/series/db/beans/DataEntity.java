@@ -57,6 +57,8 @@ public abstract class DataEntity<T> {
 
     public static final String PROPERTY_VALUE = "value";
 
+    public static final String PROPERTY_PARAMETERS = "parameters";
+
     private Long pkid;
 
     // optional
@@ -77,6 +77,11 @@ public class ServiceEntity extends DescribableEntity {
         return observation.isNoDataValue(noDataValues);
     }
 
+    @JsonIgnore
+    public List<String> getNoDataValueList() {
+        return Collections.unmodifiableList(noDataValues);
+    }
+
     public String getNoDataValues() {
         // XXX make parsing more robust
         final String csv = Arrays.toString(noDataValues.toArray(new Double[0]));
@@ -30,9 +30,16 @@
 package org.n52.series.db.da;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.joda.time.Interval;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.io.response.dataset.AbstractValue;
@@ -45,15 +52,28 @@ import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.GeometryEntity;
 import org.n52.series.db.beans.parameter.Parameter;
+import org.n52.series.db.dao.ChunkedDataDao;
+import org.n52.series.db.dao.DataChunkCache;
 import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.Resampling;
+import org.n52.web.exception.BadRequestException;
+import org.springframework.beans.factory.annotation.Autowired;
 
 public abstract class AbstractDataRepository<S extends DatasetEntity< ? >,
                                              E extends DataEntity< ? >,
                                              V extends AbstractValue< ? >>
         extends SessionAwareRepository implements DataRepository<S, V> {
 
+    // optional, data is queried directly if not configured
+    @Autowired(required = false)
+    private DataChunkCache dataChunkCache;
+
+    // optional, no read-ahead if not configured
+    @Autowired(required = false)
+    private DataPrefetcher dataPrefetcher;
+
     @Override
     public Data< ? extends AbstractValue< ? >> getData(String datasetId, DbQuery dbQuery) throws DataAccessException {
         Session session = getSession();
@@ -68,9 +88,18 @@ public abstract class AbstractDataRepository<S extends DatasetEntity< ? >,
             if (series.getService() == null) {
                 series.setService(getServiceEntity());
             }
-            return dbQuery.isExpanded()
-                    ? assembleDataWithReferenceValues(series, dbQuery, session)
-                    : assembleData(series, dbQuery, session);
+            Data<V> data;
+            if (dbQuery.isResampling()) {
+                data = assembleResampledData(series, dbQuery, session);
+            } else {
+                data = dbQuery.isExpanded()
+                        ? assembleDataWithReferenceValues(series, dbQuery, session)
+                        : assembleData(series, dbQuery, session);
+            }
+            if (dataPrefetcher != null) {
+                dataPrefetcher.onAccess(series, dbQuery);
+            }
+            return data;
         } finally {
             returnSession(session);
         }
@@ -94,18 +123,65 @@ public abstract class AbstractDataRepository<S extends DatasetEntity< ? >,
                 : null;
     }
 
+    @Override
+    public Map<Long, V> getFirstValues(Collection<S> entities, Session session, DbQuery query) {
+        DataDao<E> dao = createDataDao(session);
+        return createSeriesValuesFor(dao.getDataValuesViaTimestart(entities, query), entities, query);
+    }
+
+    @Override
+    public Map<Long, V> getLastValues(Collection<S> entities, Session session, DbQuery query) {
+        DataDao<E> dao = createDataDao(session);
+        return createSeriesValuesFor(dao.getDataValuesViaTimeend(entities, query), entities, query);
+    }
+
+    private Map<Long, V> createSeriesValuesFor(Map<Long, E> valueEntities, Collection<S> entities, DbQuery query) {
+        Map<Long, V> values = new HashMap<>();
+        for (S entity : entities) {
+            E valueEntity = valueEntities.get(entity.getPkid());
+            if (valueEntity != null) {
+                values.put(entity.getPkid(), createSeriesValueFor(valueEntity, entity, query));
+            }
+        }
+        return values;
+    }
+
     @Override
     public GeometryEntity getLastKnownGeometry(S entity, Session session, DbQuery query) {
         DataDao<E> dao = createDataDao(session);
         return dao.getValueGeometryViaTimeend(entity, query);
     }
 
+    @Override
+    public Map<Long, GeometryEntity> getLastKnownGeometries(Collection<S> entities, Session session, DbQuery query) {
+        DataDao<E> dao = createDataDao(session);
+        return dao.getValueGeometriesViaTimeend(entities, query);
+    }
+
     protected DatasetDao<S> getSeriesDao(Session session) {
         return new DatasetDao<>(session);
     }
 
     protected DataDao<E> createDataDao(Session session) {
-        return new DataDao<>(session);
+        return dataChunkCache != null
+                ? new ChunkedDataDao<>(session, dataChunkCache)
+                : new DataDao<>(session);
+    }
+
+    public DataChunkCache getDataChunkCache() {
+        return dataChunkCache;
+    }
+
+    public void setDataChunkCache(DataChunkCache dataChunkCache) {
+        this.dataChunkCache = dataChunkCache;
+    }
+
+    public DataPrefetcher getDataPrefetcher() {
+        return dataPrefetcher;
+    }
+
+    public void setDataPrefetcher(DataPrefetcher dataPrefetcher) {
+        this.dataPrefetcher = dataPrefetcher;
     }
 
     @Override
@@ -122,6 +198,156 @@ public abstract class AbstractDataRepository<S extends DatasetEntity< ? >,
         return assembleData(datasetEntity, dbQuery, session);
     }
 
+    /**
+     * Resamples the data to the regular grid requested via {@link DbQuery#getResampling()}. Observations are
+     * scrolled for the requested timespan padded by the maximum gap, so values at the first and last grid
+     * points can be interpolated. Only the observations surrounding the current grid point are kept in
+     * memory.
+     *
+     * @param dataset
+     *        the dataset
+     * @param query
+     *        the query containing resampling settings
+     * @param session
+     *        the session
+     * @return the values at the grid points
+     * @throws DataAccessException
+     *         if loading the observations fails
+     * @throws BadRequestException
+     *         if the value type does not support the requested resampling
+     */
+    protected Data<V> assembleResampledData(S dataset, DbQuery query, Session session) throws DataAccessException {
+        Resampling resampling = query.getResampling();
+        if (!isResamplingSupported(resampling)) {
+            throw new BadRequestException("Resampling with " + resampling.getInterpolation()
+                    + " interpolation is not supported for value type '" + dataset.getValueType() + "'.");
+        }
+        Interval timespan = query.getTimespan();
+        resampling.assertGridSize(timespan);
+        Interval dataTimespan = resampling.getDataTimespan(timespan);
+        IoParameters parameters = query.getParameters()
+                                       .extendWith(Parameters.TIMESPAN, dataTimespan.toString());
+        ScrollableResults results = createDataDao(session).scrollAllInstancesFor(dataset, getDbQuery(parameters));
+        try {
+            return resample(() -> new ScrolledObservations<>(results, session), dataset, query, resampling, timespan);
+        } finally {
+            results.close();
+        }
+    }
+
+    /**
+     * Resamples observations ordered by their end time in a single pass, i.e. keeps only the observations
+     * surrounding the current grid point.
+     *
+     * @param observations
+     *        the observations ordered by end time
+     * @param dataset
+     *        the dataset
+     * @param query
+     *        the query
+     * @param resampling
+     *        the resampling settings
+     * @param timespan
+     *        the timespan of the grid
+     * @return the values at the grid points
+     */
+    protected Data<V> resample(Iterable<E> observations,
+                               S dataset,
+                               DbQuery query,
+                               Resampling resampling,
+                               Interval timespan) {
+        Data<V> result = new Data<>();
+        Iterator<E> iterator = observations.iterator();
+        E previous = null;
+        E next = nextObservation(iterator);
+        long end = timespan.getEndMillis();
+        for (long time = resampling.getFirstGridPoint(timespan); time <= end; time += resampling.getStep()) {
+            while (next != null && getTime(next) <= time) {
+                previous = next;
+                next = nextObservation(iterator);
+            }
+            V value = resampleAt(time, previous, next, dataset, query, resampling);
+            if (value != null) {
+                result.addValues(value);
+            }
+        }
+        return result;
+    }
+
+    private V resampleAt(long time, E previous, E next, S dataset, DbQuery query, Resampling resampling) {
+        if (previous != null && getTime(previous) == time) {
+            return createResampledValue(time, previous, null, 0, dataset, query);
+        }
+        if (previous == null || next == null || resampling.isGap(getTime(previous), getTime(next))) {
+            return resampling.getGapFill() == Resampling.GapFill.NULL
+                    ? createResampledValue(time, null, null, 0, dataset, query)
+                    : null;
+        }
+        switch (resampling.getInterpolation()) {
+            case PREVIOUS:
+                return createResampledValue(time, previous, null, 0, dataset, query);
+            case NEAREST:
+                E nearest = time - getTime(previous) <= getTime(next) - time
+                        ? previous
+                        : next;
+                return createResampledValue(time, nearest, null, 0, dataset, query);
+            default:
+                double fraction = (double) (time - getTime(previous)) / (getTime(next) - getTime(previous));
+                return createResampledValue(time, previous, next, fraction, dataset, query);
+        }
+    }
+
+    private E nextObservation(Iterator<E> iterator) {
+        while (iterator.hasNext()) {
+            E observation = iterator.next();
+            if (observation != null) {
+                return observation;
+            }
+        }
+        return null;
+    }
+
+    private long getTime(E observation) {
+        return observation.getTimeend()
+                          .getTime();
+    }
+
+    /**
+     * Resampling is supported by value types overriding this method and
+     * {@link #createResampledValue(long, DataEntity, DataEntity, double, DatasetEntity, DbQuery)}. Unsupported
+     * requests are rejected as bad requests before any observation is loaded.
+     *
+     * @param resampling
+     *        the requested resampling
+     * @return if values of this type can be resampled as requested
+     */
+    protected boolean isResamplingSupported(Resampling resampling) {
+        return false;
+    }
+
+    /**
+     * Creates the value of a grid point. Only called if {@link #isResamplingSupported(Resampling)} returns
+     * <code>true</code>.
+     *
+     * @param time
+     *        the time of the grid point
+     * @param previous
+     *        the observation to take the value from, or to interpolate from if <code>next</code> is set.
+     *        <code>null</code> if the grid point lies within a gap.
+     * @param next
+     *        the observation to interpolate to, <code>null</code> if no interpolation is needed
+     * @param fraction
+     *        the relative position of the grid point between <code>previous</code> and <code>next</code>
+     * @param dataset
+     *        the dataset
+     * @param query
+     *        the query
+     * @return the value at the grid point
+     */
+    protected V createResampledValue(long time, E previous, E next, double fraction, S dataset, DbQuery query) {
+        throw new IllegalStateException("Resampling is not supported by " + getClass().getSimpleName());
+    }
+
     protected boolean hasValidEntriesWithinRequestedTimespan(List< ? > observations) {
         return observations.size() > 0;
     }
@@ -132,15 +358,24 @@ public abstract class AbstractDataRepository<S extends DatasetEntity< ? >,
 
     protected V addMetadatasIfNeeded(E observation, V value, S dataset, DbQuery query) {
         // TODO move to appropriate location
-        addResultTime(observation, value);
+        if (query.isFieldSelected(DbQuery.FIELD_RESULT_TIME)) {
+            addResultTime(observation, value);
+        }
 
+        boolean geometrySelected = query.isFieldSelected(DbQuery.FIELD_GEOMETRY);
         if (query.isExpanded()) {
-            addValidTime(observation, value);
-            addParameters(observation, value, query);
-            addGeometry(observation, value, query);
+            if (query.isFieldSelected(DbQuery.FIELD_VALID_TIME)) {
+                addValidTime(observation, value);
+            }
+            if (query.isFieldSelected(DbQuery.FIELD_PARAMETERS)) {
+                addParameters(observation, value, query);
+            }
+            if (geometrySelected) {
+                addGeometry(observation, value, query);
+            }
         } else {
-            if (dataset.getPlatform()
-                       .isMobile()) {
+            if (geometrySelected && dataset.getPlatform()
+                                           .isMobile()) {
                 addGeometry(observation, value, query);
             }
         }
@@ -183,4 +418,43 @@ public abstract class AbstractDataRepository<S extends DatasetEntity< ? >,
         }
     }
 
+    /**
+     * Iterates scrolled observations. Observations are evicted from the session once read, so the session
+     * does not grow with the number of observations.
+     */
+    private static final class ScrolledObservations<E> implements Iterator<E> {
+
+        private final ScrollableResults results;
+
+        private final Session session;
+
+        private Boolean hasNext;
+
+        private ScrolledObservations(ScrollableResults results, Session session) {
+            this.results = results;
+            this.session = session;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                hasNext = results.next();
+            }
+            return hasNext;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            E observation = (E) results.get(0);
+            session.evict(observation);
+            return observation;
+        }
+
+    }
+
 }
@@ -30,9 +30,14 @@
 package org.n52.series.db.da;
 
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 import org.hibernate.Session;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.dataset.Data;
 import org.n52.io.response.dataset.category.CategoryValue;
@@ -40,12 +45,19 @@ import org.n52.series.db.DataAccessException;
 import org.n52.series.db.beans.CategoryDataEntity;
 import org.n52.series.db.beans.CategoryDatasetEntity;
 import org.n52.series.db.beans.ServiceEntity;
+import org.n52.series.db.dao.CategoryDataDao;
 import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.TimeBucket;
 
 public class CategoryDataRepository
         extends AbstractDataRepository<CategoryDatasetEntity, CategoryDataEntity, CategoryValue> {
 
+    /**
+     * Aggregation counting category occurrences per time bucket instead of returning single values.
+     */
+    public static final String AGGREGATION_FREQUENCY = "frequency";
+
     @Override
     public Class<CategoryDatasetEntity> getDatasetEntityType() {
         return CategoryDatasetEntity.class;
@@ -54,8 +66,11 @@ public class CategoryDataRepository
     @Override
     protected Data<CategoryValue> assembleData(CategoryDatasetEntity seriesEntity, DbQuery query, Session session)
             throws DataAccessException {
+        if (query.isAggregation(AGGREGATION_FREQUENCY)) {
+            return assembleFrequencies(seriesEntity, query, session);
+        }
         Data<CategoryValue> result = new Data<>();
-        DataDao<CategoryDataEntity> dao = new DataDao<>(session);
+        DataDao<CategoryDataEntity> dao = createDataDao(session);
         List<CategoryDataEntity> observations = dao.getAllInstancesFor(seriesEntity, query);
         for (CategoryDataEntity observation : observations) {
             if (observation != null) {
@@ -65,6 +80,39 @@ public class CategoryDataRepository
         return result;
     }
 
+    private Data<CategoryValue> assembleFrequencies(CategoryDatasetEntity seriesEntity,
+                                                    DbQuery query,
+                                                    Session session)
+            throws DataAccessException {
+        TimeBucket bucket = query.getTimeBucket();
+        CategoryDataDao dao = new CategoryDataDao(session);
+        SortedMap<Date, Map<String, Long>> frequencies = dao.getFrequencies(seriesEntity, query, bucket);
+        ServiceEntity service = getServiceEntity(seriesEntity);
+        CategoryFrequencyData result = new CategoryFrequencyData();
+        for (Map.Entry<Date, Map<String, Long>> entry : frequencies.entrySet()) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> count : entry.getValue()
+                                                      .entrySet()) {
+                if (count.getKey() != null && !isNoDataValue(count.getKey(), service)) {
+                    counts.put(count.getKey(), count.getValue());
+                }
+            }
+            if (!counts.isEmpty()) {
+                DateTime bucketStart = new DateTime(entry.getKey(), DateTimeZone.UTC);
+                long end = bucket.next(bucketStart)
+                                 .getMillis();
+                result.addBucket(bucketStart.getMillis(), end, counts);
+            }
+        }
+        return result;
+    }
+
+    private boolean isNoDataValue(String category, ServiceEntity service) {
+        CategoryDataEntity observation = new CategoryDataEntity();
+        observation.setValue(category);
+        return service.isNoDataValue(observation);
+    }
+
     @Override
     public CategoryValue createSeriesValueFor(CategoryDataEntity observation,
                                               CategoryDatasetEntity series,
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.n52.io.response.dataset.Data;
+import org.n52.io.response.dataset.category.CategoryValue;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Frequency table of category data, i.e. how often each category occurred per time bucket. Serialized
+ * compactly as one row per bucket (see {@link CategoryFrequencyDataSerializer}).
+ * <p>
+ * For compatibility {@link #getValues()} returns one {@link CategoryValue} per bucket and category, spanning
+ * the bucket and having the number of occurrences as <code>frequency</code> parameter. Adding values via
+ * {@link #addValues(CategoryValue...)} is not supported, use {@link #addBucket(long, long, Map)} instead.
+ */
+@JsonSerialize(using = CategoryFrequencyDataSerializer.class)
+public class CategoryFrequencyData extends Data<CategoryValue> {
+
+    private static final long serialVersionUID = -6212780651839335270L;
+
+    static final String PARAMETER_FREQUENCY = "frequency";
+
+    private static final String PARAMETER_NAME = "name";
+
+    private static final String PARAMETER_VALUE = "value";
+
+    private final List<Long> bucketStarts = new ArrayList<>();
+
+    private final List<Long> bucketEnds = new ArrayList<>();
+
+    private final List<Map<String, Long>> frequencies = new ArrayList<>();
+
+    /**
+     * @param bucketStart
+     *        the (inclusive) start of the bucket.
+     * @param bucketEnd
+     *        the (exclusive) end of the bucket.
+     * @param counts
+     *        the number of occurrences by category.
+     */
+    public void addBucket(long bucketStart, long bucketEnd, Map<String, Long> counts) {
+        bucketStarts.add(bucketStart);
+        bucketEnds.add(bucketEnd);
+        frequencies.add(Collections.unmodifiableMap(new LinkedHashMap<>(counts)));
+    }
+
+    public int size() {
+        return bucketStarts.size();
+    }
+
+    public long getBucketStart(int index) {
+        return bucketStarts.get(index);
+    }
+
+    public long getBucketEnd(int index) {
+        return bucketEnds.get(index);
+    }
+
+    public Map<String, Long> getFrequencies(int index) {
+        return frequencies.get(index);
+    }
+
+    /**
+     * Not supported, frequencies have to be added via {@link #addBucket(long, long, Map)}.
+     *
+     * @param values
+     *        ignored
+     * @throws UnsupportedOperationException
+     *         always
+     */
+    @Override
+    public void addValues(CategoryValue... values) {
+        throw new UnsupportedOperationException("Frequencies have to be added via addBucket().");
+    }
+
+    @Override
+    public List<CategoryValue> getValues() {
+        List<CategoryValue> values = new ArrayList<>();
+        for (int i = 0; i < size(); i++) {
+            for (Map.Entry<String, Long> frequency : frequencies.get(i)
+                                                                .entrySet()) {
+                CategoryValue value = new CategoryValue(getBucketStart(i), getBucketEnd(i), frequency.getKey());
+                Map<String, Object> parameter = new HashMap<>();
+                parameter.put(PARAMETER_NAME, PARAMETER_FREQUENCY);
+                parameter.put(PARAMETER_VALUE, frequency.getValue());
+                value.addParameter(parameter);
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Serializes {@link CategoryFrequencyData} as one row per time bucket:
+ *
+ * <pre>
+ * {"values":[{"timestart":1483228800000,"timeend":1483315200000,"frequencies":{"rain":3,"snow":1}}]}
+ * </pre>
+ */
+public class CategoryFrequencyDataSerializer extends StdSerializer<CategoryFrequencyData> {
+
+    private static final long serialVersionUID = 8717285000416738213L;
+
+    private static final String VALUES = "values";
+
+    private static final String TIMESTART = "timestart";
+
+    private static final String TIMEEND = "timeend";
+
+    private static final String FREQUENCIES = "frequencies";
+
+    public CategoryFrequencyDataSerializer() {
+        super(CategoryFrequencyData.class);
+    }
+
+    @Override
+    public void serialize(CategoryFrequencyData data, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        gen.writeStartObject();
+        gen.writeArrayFieldStart(VALUES);
+        for (int i = 0; i < data.size(); i++) {
+            gen.writeStartObject();
+            gen.writeNumberField(TIMESTART, data.getBucketStart(i));
+            gen.writeNumberField(TIMEEND, data.getBucketEnd(i));
+            gen.writeObjectFieldStart(FREQUENCIES);
+            for (Map.Entry<String, Long> frequency : data.getFrequencies(i)
+                                                         .entrySet()) {
+                gen.writeNumberField(frequency.getKey(), frequency.getValue());
+            }
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.joda.time.Interval;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.dao.ChunkedDataDao;
+import org.n52.series.db.dao.DataChunkCache;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.DbQueryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Detects sequential time window navigation (paging forwards or backwards in time) per dataset and loads the
+ * next expected window into the {@link DataChunkCache} in the background. Prefetching runs on a single low
+ * priority thread. Prefetch requests are dropped if the queue is full.
+ */
+public class DataPrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataPrefetcher.class);
+
+    private static final int DEFAULT_QUEUE_SIZE = 50;
+
+    private static final long DEFAULT_MAXIMUM_TRACKED_DATASETS = 1000;
+
+    private static final long DEFAULT_TRACKING_TIMEOUT_IN_MINUTES = 10;
+
+    private final Cache<Long, Interval> lastAccesses;
+
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    private HibernateSessionStore sessionStore;
+
+    @Autowired
+    private DataChunkCache dataChunkCache;
+
+    @Autowired
+    private DbQueryFactory dbQueryFactory;
+
+    public DataPrefetcher() {
+        this(DEFAULT_QUEUE_SIZE);
+    }
+
+    public DataPrefetcher(int queueSize) {
+        this.lastAccesses = CacheBuilder.newBuilder()
+                                        .maximumSize(DEFAULT_MAXIMUM_TRACKED_DATASETS)
+                                        .expireAfterWrite(DEFAULT_TRACKING_TIMEOUT_IN_MINUTES, TimeUnit.MINUTES)
+                                        .build();
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(queueSize),
+                                               runnable -> {
+                                                   Thread thread = new Thread(runnable, "data-prefetcher");
+                                                   thread.setPriority(Thread.MIN_PRIORITY);
+                                                   thread.setDaemon(true);
+                                                   return thread;
+                                               },
+                                               new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Tracks the access to a dataset's data and schedules loading the next window in case a sequential access
+     * pattern has been detected.
+     *
+     * @param dataset
+     *        the accessed dataset
+     * @param query
+     *        the query the data has been accessed with
+     */
+    public void onAccess(DatasetEntity< ? > dataset, DbQuery query) {
+        if (!dataChunkCache.isCacheable(query)) {
+            return;
+        }
+        Long datasetId = dataset.getPkid();
+        Interval current = query.getTimespan();
+        Interval previous = lastAccesses.getIfPresent(datasetId);
+        lastAccesses.put(datasetId, current);
+
+        Interval next = predictNext(previous, current);
+        if (next != null && next.isBeforeNow()) {
+            LOGGER.debug("prefetch data of dataset '{}' for {}", datasetId, next);
+            String valueType = dataset.getValueType();
+            executor.execute(() -> prefetch(datasetId, valueType, next, query.getParameters()));
+        }
+    }
+
+    /**
+     * @param previous
+     *        the previously accessed window (may be <code>null</code>)
+     * @param current
+     *        the currently accessed window
+     * @return the window expected to be accessed next, or <code>null</code> if access is not sequential
+     */
+    static Interval predictNext(Interval previous, Interval current) {
+        if (previous == null || current.equals(previous)) {
+            return null;
+        }
+        long duration = current.toDurationMillis();
+        if (current.getStartMillis() == previous.getEndMillis()) {
+            // paging forwards
+            return new Interval(current.getEndMillis(), current.getEndMillis() + duration);
+        } else if (current.getEndMillis() == previous.getStartMillis()) {
+            // paging backwards
+            return new Interval(current.getStartMillis() - duration, current.getStartMillis());
+        }
+        return null;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void prefetch(Long datasetId, String valueType, Interval window, IoParameters parameters) {
+        IoParameters windowParameters = parameters.extendWith(Parameters.TIMESPAN, window.toString());
+        DbQuery windowQuery = dbQueryFactory.createFrom(windowParameters);
+        if (!dataChunkCache.isCacheable(windowQuery)) {
+            // would query the database without filling the cache
+            return;
+        }
+        Session session = sessionStore.getSession();
+        try {
+            DatasetEntity< ? > dataset = new DatasetEntity<>();
+            dataset.setPkid(datasetId);
+            dataset.setValueType(valueType);
+            new ChunkedDataDao<DataEntity>(session, dataChunkCache).getAllInstancesFor(dataset, windowQuery);
+        } catch (Exception e) {
+            LOGGER.warn("Could not prefetch data of dataset '{}' for {}", datasetId, window, e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    public void shutdown() {
+        LOGGER.info("Closing '{}'", getClass().getSimpleName());
+        executor.shutdownNow();
+    }
+
+    public void setSessionStore(HibernateSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    public void setDataChunkCache(DataChunkCache dataChunkCache) {
+        this.dataChunkCache = dataChunkCache;
+    }
+
+    public void setDbQueryFactory(DbQueryFactory dbQueryFactory) {
+        this.dbQueryFactory = dbQueryFactory;
+    }
+
+}
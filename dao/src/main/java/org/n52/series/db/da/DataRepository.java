@@ -29,7 +29,10 @@
 
 package org.n52.series.db.da;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Session;
 import org.n52.io.response.dataset.AbstractValue;
@@ -50,8 +53,68 @@ public interface DataRepository<E extends DatasetEntity< ? >, V extends Abstract
 
     V getLastValue(E entity, Session session, DbQuery query);
 
+    /**
+     * @param entities
+     *        the datasets
+     * @param session
+     *        the session
+     * @param query
+     *        the query instance
+     * @return the first values mapped by dataset id. Datasets without values are not contained.
+     */
+    default Map<Long, V> getFirstValues(Collection<E> entities, Session session, DbQuery query) {
+        Map<Long, V> values = new HashMap<>();
+        for (E entity : entities) {
+            V value = getFirstValue(entity, session, query);
+            if (value != null) {
+                values.put(entity.getPkid(), value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @param entities
+     *        the datasets
+     * @param session
+     *        the session
+     * @param query
+     *        the query instance
+     * @return the last values mapped by dataset id. Datasets without values are not contained.
+     */
+    default Map<Long, V> getLastValues(Collection<E> entities, Session session, DbQuery query) {
+        Map<Long, V> values = new HashMap<>();
+        for (E entity : entities) {
+            V value = getLastValue(entity, session, query);
+            if (value != null) {
+                values.put(entity.getPkid(), value);
+            }
+        }
+        return values;
+    }
+
     GeometryEntity getLastKnownGeometry(E lastDataset, Session session, DbQuery query);
 
+    /**
+     * @param datasets
+     *        the datasets
+     * @param session
+     *        the session
+     * @param query
+     *        the query instance
+     * @return the last known geometries mapped by dataset id. Datasets without values are not contained.
+     */
+    default Map<Long, GeometryEntity> getLastKnownGeometries(Collection<E> datasets, Session session, DbQuery query) {
+        Map<Long, GeometryEntity> geometries = new HashMap<>();
+        for (E dataset : datasets) {
+            GeometryEntity geometry = getLastKnownGeometry(dataset, session, query);
+            if (geometry != null) {
+                geometries.put(dataset.getPkid(), geometry);
+            }
+        }
+        return geometries;
+    }
+
     void setSessionStore(HibernateSessionStore sessionStore);
 
     List<ReferenceValueOutput<V>> createReferenceValueOutputs(E datasetEntity, DbQuery query);
@@ -31,13 +31,17 @@ package org.n52.series.db.da;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.hibernate.Session;
 import org.n52.io.DatasetFactoryException;
 import org.n52.io.request.FilterResolver;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.PlatformOutput;
+import org.n52.io.response.PlatformType;
 import org.n52.io.response.dataset.AbstractValue;
 import org.n52.io.response.dataset.Data;
 import org.n52.io.response.dataset.DatasetOutput;
@@ -117,21 +121,41 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
     @Override
     public List<DatasetOutput> getAllCondensed(DbQuery query, Session session) throws DataAccessException {
         List<DatasetOutput> results = new ArrayList<>();
+        addCondensedResults(getDatasetDao(query, session), query, results, session);
+        return results;
+    }
+
+    /**
+     * @param query
+     *        the query instance
+     * @param session
+     *        the session
+     * @return all dataset entities matching the query
+     * @throws DataAccessException
+     *         if accessing the database fails
+     */
+    List<DatasetEntity> getAllInstances(DbQuery query, Session session) throws DataAccessException {
+        return new ArrayList<>(getDatasetDao(query, session).getAllInstances(query));
+    }
+
+    /**
+     * Value types are queried polymorphically in a single query. The dao restricts the value types via
+     * {@link DatasetEntity#PROPERTY_VALUE_TYPE}, results are dispatched per dataset afterwards.
+     */
+    private DatasetDao< ? extends DatasetEntity> getDatasetDao(DbQuery query, Session session)
+            throws DataAccessException {
         FilterResolver filterResolver = query.getFilterResolver();
-        if (query.getParameters().isMatchDomainIds()) {
+        if (query.getParameters()
+                 .isMatchDomainIds()) {
             String valueType = query.getHandleAsValueTypeFallback();
-            addCondensedResults(getDatasetDao(valueType, session), query, results, session);
-            return results;
+            return getDatasetDao(valueType, session);
         }
-
-        if (filterResolver.shallIncludeAllDatasetTypes()) {
-            addCondensedResults(getDatasetDao(DatasetEntity.class, session), query, results, session);
-        } else {
+        if (!filterResolver.shallIncludeAllDatasetTypes()) {
             for (String valueType : query.getValueTypes()) {
-                addCondensedResults(getDatasetDao(valueType, session), query, results, session);
+                assertKnownValueType(valueType);
             }
         }
-        return results;
+        return getDatasetDao(DatasetEntity.class, session);
     }
 
     private void addCondensedResults(DatasetDao<? extends DatasetEntity> dao,
@@ -150,20 +174,28 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
 
     private DatasetDao< ? extends DatasetEntity> getDatasetDao(String valueType, Session session)
             throws DataAccessException {
+        assertKnownValueType(valueType);
+        return createDataAccessRepository(valueType, session);
+    }
+
+    private void assertKnownValueType(String valueType) throws BadQueryParameterException {
         if (!("all".equalsIgnoreCase(valueType) || dataRepositoryFactory.isKnown(valueType))) {
             throw new BadQueryParameterException("invalid type: " + valueType);
         }
-        return createDataAccessRepository(valueType, session);
     }
 
     private DatasetDao< ? extends DatasetEntity> getSeriesDao(String datasetId, DbQuery query, Session session)
             throws DataAccessException {
+        return createDataAccessRepository(getValueType(datasetId, query), session);
+    }
+
+    private String getValueType(String datasetId, DbQuery query) throws ResourceNotFoundException {
         String handleAsFallback = query.getHandleAsValueTypeFallback();
         final String valueType = ValueType.extractType(datasetId, handleAsFallback);
         if (!dataRepositoryFactory.isKnown(valueType)) {
             throw new ResourceNotFoundException("unknown type: " + valueType);
         }
-        return createDataAccessRepository(valueType, session);
+        return valueType;
     }
 
     private DatasetDao< ? extends DatasetEntity> createDataAccessRepository(String valueType, Session session)
@@ -189,21 +221,7 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
     @Override
     public List<DatasetOutput> getAllExpanded(DbQuery query, Session session) throws DataAccessException {
         List<DatasetOutput> results = new ArrayList<>();
-        FilterResolver filterResolver = query.getFilterResolver();
-        if (query.getParameters()
-                 .isMatchDomainIds()) {
-            String valueType = query.getHandleAsValueTypeFallback();
-            addExpandedResults(getDatasetDao(valueType, session), query, results, session);
-            return results;
-        }
-
-        if (filterResolver.shallIncludeAllDatasetTypes()) {
-            addExpandedResults(getDatasetDao(DatasetEntity.class, session), query, results, session);
-        } else {
-            for (String valueType : query.getValueTypes()) {
-                addExpandedResults(getDatasetDao(valueType, session), query, results, session);
-            }
-        }
+        addExpandedResults(getDatasetDao(query, session), query, results, session);
         return results;
     }
 
@@ -212,8 +230,54 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
                                     List<DatasetOutput> results,
                                     Session session)
             throws DataAccessException {
-        for (DatasetEntity series : dao.getAllInstances(query)) {
-            results.add(createExpanded(series, query, session));
+        List<DatasetEntity> datasets = new ArrayList<>(dao.getAllInstances(query));
+        Map<Long, DatasetOutput> outputs = createExpanded(datasets, query, session);
+        for (DatasetEntity dataset : datasets) {
+            // keep order of the dataset query
+            results.add(outputs.get(dataset.getPkid()));
+        }
+    }
+
+    private Map<Long, DatasetOutput> createExpanded(List<DatasetEntity> datasets, DbQuery query, Session session)
+            throws DataAccessException {
+        Map<String, List<DatasetEntity>> datasetsByValueType = datasets.stream()
+                                                                       .collect(Collectors.groupingBy(
+                                                                           DatasetEntity::getValueType));
+        Map<Long, DatasetOutput> outputs = new HashMap<>();
+        for (Map.Entry<String, List<DatasetEntity>> entry : datasetsByValueType.entrySet()) {
+            addExpandedResults(entry.getKey(), entry.getValue(), query, outputs, session);
+        }
+        return outputs;
+    }
+
+    /**
+     * Creates expanded outputs for datasets of the same value type. First and last values are resolved in bulk
+     * instead of querying them for each dataset separately.
+     */
+    private void addExpandedResults(String valueType,
+                                    List<DatasetEntity> datasets,
+                                    DbQuery query,
+                                    Map<Long, DatasetOutput> outputs,
+                                    Session session)
+            throws DataAccessException {
+        try {
+            DataRepository dataRepository = dataRepositoryFactory.create(valueType);
+            datasets.forEach(this::assertServiceAvailable);
+            List<DatasetEntity> multipleValued = datasets.stream()
+                                                         .filter(dataset -> !isSingleValued(dataset))
+                                                         .collect(Collectors.toList());
+            Map<Long, AbstractValue> firstValues = dataRepository.getFirstValues(datasets, session, query);
+            Map<Long, AbstractValue> lastValues = dataRepository.getLastValues(multipleValued, session, query);
+            for (DatasetEntity dataset : datasets) {
+                Long id = dataset.getPkid();
+                AbstractValue firstValue = firstValues.get(id);
+                AbstractValue lastValue = isSingleValued(dataset)
+                        ? firstValue
+                        : lastValues.get(id);
+                outputs.put(id, createExpanded(dataset, dataRepository, firstValue, lastValue, query, session));
+            }
+        } catch (DatasetFactoryException ex) {
+            throwNewCreateFactoryException(ex);
         }
     }
 
@@ -233,6 +297,50 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
         return createExpanded(instanceEntity, query, session);
     }
 
+    @Override
+    public List<DatasetOutput> getInstances(Collection<String> ids, DbQuery query) throws DataAccessException {
+        Session session = getSession();
+        try {
+            return getInstances(ids, query, session);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    /**
+     * Loads all requested datasets polymorphically within a single query and creates their expanded outputs
+     * in bulk. As when loading a single dataset, a dataset is found only if its value type matches the one of
+     * the requested id.
+     */
+    private List<DatasetOutput> getInstances(Collection<String> ids, DbQuery query, Session session)
+            throws DataAccessException {
+        List<Long> pkids = new ArrayList<>();
+        for (String id : ids) {
+            pkids.add(parseId(ValueType.extractId(id)));
+        }
+        DatasetDao< ? extends DatasetEntity> dao = getDatasetDao(DatasetEntity.class, session);
+        Map<Long, DatasetEntity> entities = new HashMap<>();
+        for (DatasetEntity entity : dao.getInstances(pkids, query)) {
+            entities.put(entity.getPkid(), entity);
+        }
+        List<DatasetEntity> datasets = new ArrayList<>();
+        for (String id : ids) {
+            // fails for unknown value types
+            String valueType = getValueType(id, query);
+            DatasetEntity dataset = entities.get(parseId(ValueType.extractId(id)));
+            if (dataset == null || !valueType.equals(dataset.getValueType())) {
+                throw new ResourceNotFoundException("Resource with id '" + id + "' could not be found.");
+            }
+            datasets.add(dataset);
+        }
+        Map<Long, DatasetOutput> outputs = createExpanded(datasets, query, session);
+        List<DatasetOutput> results = new ArrayList<>();
+        for (DatasetEntity dataset : datasets) {
+            results.add(outputs.get(dataset.getPkid()));
+        }
+        return results;
+    }
+
     DatasetEntity getInstanceEntity(String id, DbQuery query, Session session) throws DataAccessException {
         String rawId = ValueType.extractId(id);
         DatasetDao< ? extends DatasetEntity> dao = getSeriesDao(id, query, session);
@@ -280,7 +388,7 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
         String uom = dataset.getUnitI18nName(query.getLocale());
         String label = createDatasetLabel(dataset, query.getLocale());
         String hrefBase = urlHelper.getDatasetsHrefBaseUrl(query.getHrefBase());
-        String platformtype = getCondensedPlatform(dataset, query, session).getPlatformType();
+        String platformtype = getPlatformType(dataset).getPlatformType();
 
         result.setId(id.toString());
         result.setValue(DatasetOutput.UOM, uom, parameters, result::setUom);
@@ -295,38 +403,56 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
     protected DatasetOutput< ? > createExpanded(DatasetEntity dataset, DbQuery query, Session session)
             throws DataAccessException {
         try {
-            IoParameters params = query.getParameters();
-            DatasetOutput result = createCondensed(dataset, query, session);
-
-            DatasetParameters datasetParameters = createDatasetParameters(dataset, query, session);
-            datasetParameters.setPlatform(getCondensedPlatform(dataset, query, session));
-            if (dataset.getService() == null) {
-                dataset.setService(getServiceEntity());
-            }
-
+            assertServiceAvailable(dataset);
             DataRepository dataRepository = dataRepositoryFactory.create(dataset.getValueType());
             AbstractValue firstValue = dataRepository.getFirstValue(dataset, session, query);
-            AbstractValue lastValue = dataset.getFirstValueAt().equals(dataset.getLastValueAt()) ? firstValue
-                    : dataRepository.getLastValue(dataset, session, query);
-
-            List<ReferenceValueOutput> refValues = dataRepository.createReferenceValueOutputs(dataset, query);
-            lastValue = isReferenceSeries(dataset) && isCongruentValues(firstValue, lastValue)
-                    // first == last to have a valid interval
+            AbstractValue lastValue = isSingleValued(dataset)
                     ? firstValue
-                    : lastValue;
-
-            result.setValue(DatasetOutput.REFERENCE_VALUES, refValues, params, result::setReferenceValues);
-            result.setValue(DatasetOutput.DATASET_PARAMETERS, datasetParameters, params, result::setDatasetParameters);
-            result.setValue(DatasetOutput.FIRST_VALUE, firstValue, params, result::setFirstValue);
-            result.setValue(DatasetOutput.LAST_VALUE, lastValue, params, result::setLastValue);
-
-            return result;
+                    : dataRepository.getLastValue(dataset, session, query);
+            return createExpanded(dataset, dataRepository, firstValue, lastValue, query, session);
         } catch (DatasetFactoryException ex) {
             throwNewCreateFactoryException(ex);
             return null;
         }
     }
 
+    private DatasetOutput< ? > createExpanded(DatasetEntity dataset,
+                                              DataRepository dataRepository,
+                                              AbstractValue firstValue,
+                                              AbstractValue lastValue,
+                                              DbQuery query,
+                                              Session session)
+            throws DataAccessException {
+        IoParameters params = query.getParameters();
+        DatasetOutput result = createCondensed(dataset, query, session);
+
+        DatasetParameters datasetParameters = createDatasetParameters(dataset, query, session);
+        datasetParameters.setPlatform(getCondensedPlatform(dataset, query, session));
+
+        List<ReferenceValueOutput> refValues = dataRepository.createReferenceValueOutputs(dataset, query);
+        lastValue = isReferenceSeries(dataset) && isCongruentValues(firstValue, lastValue)
+                // first == last to have a valid interval
+                ? firstValue
+                : lastValue;
+
+        result.setValue(DatasetOutput.REFERENCE_VALUES, refValues, params, result::setReferenceValues);
+        result.setValue(DatasetOutput.DATASET_PARAMETERS, datasetParameters, params, result::setDatasetParameters);
+        result.setValue(DatasetOutput.FIRST_VALUE, firstValue, params, result::setFirstValue);
+        result.setValue(DatasetOutput.LAST_VALUE, lastValue, params, result::setLastValue);
+        return result;
+    }
+
+    private void assertServiceAvailable(DatasetEntity dataset) {
+        if (dataset.getService() == null) {
+            dataset.setService(getServiceEntity());
+        }
+    }
+
+    private boolean isSingleValued(DatasetEntity dataset) {
+        return dataset.getFirstValueAt()
+                      .equals(dataset.getLastValueAt());
+    }
+
     private boolean isCongruentValues(AbstractValue<?> firstValue, AbstractValue<?> lastValue) {
         return firstValue.getTimestamp().equals(lastValue.getTimestamp());
     }
@@ -336,6 +462,12 @@ public class DatasetRepository<T extends Data> extends SessionAwareRepository
                      .isReference();
     }
 
+    private PlatformType getPlatformType(DatasetEntity dataset) {
+        // same as the dynamically handled platform (see #309) without loading it
+        return dataset.getProcedure()
+                      .getPlatformType();
+    }
+
     private PlatformOutput getCondensedPlatform(DatasetEntity dataset, DbQuery query, Session session)
             throws DataAccessException {
         // platform has to be handled dynamically (see #309)
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Formats decimals given as unscaled value and scale to a fixed number of decimals without creating
+ * intermediate {@link BigDecimal}s. Rounding and output are the same as
+ * <code>BigDecimal.valueOf(unscaledValue, scale).setScale(targetScale, RoundingMode.HALF_UP).toString()</code>.
+ * Values which cannot be handled within <code>long</code> arithmetic or which would be rendered in
+ * scientific notation are not formatted (<code>null</code> is returned) and have to be formatted via
+ * {@link BigDecimal} instead.
+ */
+public final class FixedPrecisionFormatter {
+
+    private static final int MAX_POWER = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_POWER + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i <= MAX_POWER; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedPrecisionFormatter() {
+    }
+
+    /**
+     * @param unscaledValue
+     *        the unscaled value
+     * @param scale
+     *        the value's scale
+     * @param targetScale
+     *        the number of decimals to round to ({@link RoundingMode#HALF_UP})
+     * @return the formatted value or <code>null</code> if the value has to be formatted via {@link BigDecimal}
+     */
+    public static String format(long unscaledValue, int scale, int targetScale) {
+        if (targetScale < 0 || unscaledValue == Long.MIN_VALUE) {
+            return null;
+        }
+        long rounded;
+        if (scale <= targetScale) {
+            int shift = targetScale - scale;
+            if (shift > MAX_POWER) {
+                return null;
+            }
+            long factor = POWERS_OF_TEN[shift];
+            if (Math.abs(unscaledValue) > Long.MAX_VALUE / factor) {
+                return null;
+            }
+            rounded = unscaledValue * factor;
+        } else {
+            int shift = scale - targetScale;
+            if (shift > MAX_POWER) {
+                return null;
+            }
+            long divisor = POWERS_OF_TEN[shift];
+            rounded = unscaledValue / divisor;
+            long remainder = Math.abs(unscaledValue % divisor);
+            if (remainder >= divisor - remainder) {
+                // half up means away from zero
+                rounded += unscaledValue < 0
+                        ? -1
+                        : 1;
+            }
+        }
+        return toPlainString(rounded, targetScale);
+    }
+
+    private static String toPlainString(long unscaledValue, int scale) {
+        String digits = Long.toString(Math.abs(unscaledValue));
+        int length = digits.length();
+        int adjustedExponent = length - scale - 1;
+        if (adjustedExponent < -6) {
+            // BigDecimal#toString() switches to scientific notation
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(length + scale + 3);
+        if (unscaledValue < 0) {
+            sb.append('-');
+        }
+        if (scale == 0) {
+            sb.append(digits);
+        } else if (length > scale) {
+            sb.append(digits, 0, length - scale)
+              .append('.')
+              .append(digits, length - scale, length);
+        } else {
+            sb.append("0.");
+            for (int i = length; i < scale; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        return sb.toString();
+    }
+
+}
@@ -33,6 +33,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.hibernate.Query;
 import org.hibernate.Session;
@@ -178,10 +180,13 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         String geometryId = GeometryType.extractId(id);
         FeatureEntity featureEntity = getFeatureEntity(geometryId, parameters, session);
         if (featureEntity != null) {
+            Map<Long, PlatformOutput> platforms = getPlatforms(Collections.singletonList(featureEntity),
+                                                               parameters,
+                                                               session);
             if (GeometryType.isSiteId(id)) {
-                return createSite(featureEntity, parameters, true);
+                return createSite(featureEntity, platforms, parameters, true);
             } else if (GeometryType.isTrackId(id)) {
-                return createTrack(featureEntity, parameters, true, session);
+                return createTrack(featureEntity, platforms, parameters, true, session);
             }
         }
         return null;
@@ -200,8 +205,10 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         DbQuery siteQuery = dbQueryFactory.createFrom(parameters.getParameters()
                                                                 .replaceWith(Parameters.FILTER_PLATFORM_TYPES,
                                                                              "stationary"));
-        for (FeatureEntity featureEntity : dao.getAllInstances(siteQuery)) {
-            GeometryInfo geometryInfo = createSite(featureEntity, parameters, expanded);
+        List<FeatureEntity> features = dao.getAllInstances(siteQuery);
+        Map<Long, PlatformOutput> platforms = getPlatforms(features, parameters, session);
+        for (FeatureEntity featureEntity : features) {
+            GeometryInfo geometryInfo = createSite(featureEntity, platforms, parameters, expanded);
             if (geometryInfo != null) {
                 geometryInfoList.add(geometryInfo);
             }
@@ -209,9 +216,12 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         return geometryInfoList;
     }
 
-    private GeometryInfo createSite(FeatureEntity entity, DbQuery query, boolean expanded)
-            throws DataAccessException {
-        GeometryInfo geometryInfo = createGeometryInfo(GeometryType.PLATFORM_SITE, entity, query);
+    private GeometryInfo createSite(FeatureEntity entity,
+                                    Map<Long, PlatformOutput> platforms,
+                                    DbQuery query,
+                                    boolean expanded) {
+        PlatformOutput platform = platforms.get(entity.getPkid());
+        GeometryInfo geometryInfo = createGeometryInfo(GeometryType.PLATFORM_SITE, entity, platform, query);
         return expanded
                 ? addGeometry(geometryInfo, entity, query)
                 : geometryInfo;
@@ -224,15 +234,21 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         DbQuery trackQuery = dbQueryFactory.createFrom(parameters.getParameters()
                                                                  .replaceWith(Parameters.FILTER_PLATFORM_TYPES,
                                                                               "mobile"));
-        for (FeatureEntity featureEntity : featureDao.getAllInstances(trackQuery)) {
-            geometryInfoList.add(createTrack(featureEntity, parameters, expanded, session));
+        List<FeatureEntity> features = featureDao.getAllInstances(trackQuery);
+        Map<Long, PlatformOutput> platforms = getPlatforms(features, parameters, session);
+        for (FeatureEntity featureEntity : features) {
+            geometryInfoList.add(createTrack(featureEntity, platforms, parameters, expanded, session));
         }
         return geometryInfoList;
     }
 
-    private GeometryInfo createTrack(FeatureEntity entity, DbQuery query, boolean expanded, Session session)
-            throws DataAccessException {
-        GeometryInfo geometryInfo = createGeometryInfo(GeometryType.PLATFORM_TRACK, entity, query);
+    private GeometryInfo createTrack(FeatureEntity entity,
+                                     Map<Long, PlatformOutput> platforms,
+                                     DbQuery query,
+                                     boolean expanded,
+                                     Session session) {
+        PlatformOutput platform = platforms.get(entity.getPkid());
+        GeometryInfo geometryInfo = createGeometryInfo(GeometryType.PLATFORM_TRACK, entity, platform, query);
         if (expanded) {
             if (entity.isSetGeometry()) {
                 // track available from feature table
@@ -316,30 +332,27 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
     }
 
 
-    private GeometryInfo createGeometryInfo(GeometryType type, FeatureEntity featureEntity, DbQuery query)
-            throws DataAccessException {
+    private GeometryInfo createGeometryInfo(GeometryType type,
+                                           FeatureEntity featureEntity,
+                                           PlatformOutput platform,
+                                           DbQuery query) {
         GeometryInfo geometryInfo = new GeometryInfo();
         IoParameters parameters = query.getParameters();
         String hrefBase = urlHelper.getGeometriesHrefBaseUrl(query.getHrefBase());
-        PlatformOutput platfom = getPlatfom(featureEntity, query);
 
         geometryInfo.setId(Long.toString(featureEntity.getPkid()));
         geometryInfo.setValue(GeometryInfo.GEOMETRY_TYPE, type, parameters, geometryInfo::setGeometryType);
         geometryInfo.setValue(GeometryInfo.HREF_BASE, hrefBase, parameters, geometryInfo::setHrefBase);
-        geometryInfo.setValue(GeometryInfo.PLATFORM, platfom, parameters, geometryInfo::setPlatform);
+        geometryInfo.setValue(GeometryInfo.PLATFORM, platform, parameters, geometryInfo::setPlatform);
         return geometryInfo;
     }
 
-    private PlatformOutput getPlatfom(FeatureEntity entity, DbQuery parameters) throws DataAccessException {
-        DbQuery platformQuery = dbQueryFactory.createFrom(parameters.getParameters()
-                                                                    .extendWith(Parameters.FEATURES,
-                                                                                String.valueOf(entity.getPkid()))
-                                                                    .extendWith(Parameters.FILTER_PLATFORM_TYPES,
-                                                                                "all"));
-
-        List<PlatformOutput> platforms = platformRepository.getAllCondensed(platformQuery);
-        return platforms.iterator()
-                        .next();
+    private Map<Long, PlatformOutput> getPlatforms(List<FeatureEntity> features, DbQuery query, Session session)
+            throws DataAccessException {
+        List<Long> featureIds = features.stream()
+                                        .map(FeatureEntity::getPkid)
+                                        .collect(Collectors.toList());
+        return platformRepository.createCondensedPlatformsByFeature(featureIds, query, session);
     }
 
 }
@@ -29,6 +29,7 @@
 
 package org.n52.series.db.da;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -52,6 +53,26 @@ public interface OutputAssembler<T> {
 
     T getInstance(String id, DbQuery parameters, Session session) throws DataAccessException;
 
+    /**
+     * Creates the outputs of multiple instances. By default each instance is loaded separately, implementations
+     * may load all instances at once.
+     *
+     * @param ids
+     *        the ids of the instances
+     * @param parameters
+     *        the query instance
+     * @return the outputs in order of the given ids
+     * @throws DataAccessException
+     *         if accessing the database fails
+     */
+    default List<T> getInstances(Collection<String> ids, DbQuery parameters) throws DataAccessException {
+        List<T> results = new ArrayList<>();
+        for (String id : ids) {
+            results.add(getInstance(id, parameters));
+        }
+        return results;
+    }
+
     Collection<SearchResult> searchFor(IoParameters parameters);
 
     boolean exists(String id, DbQuery query) throws DataAccessException;
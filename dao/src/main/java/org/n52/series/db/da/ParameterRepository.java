@@ -32,6 +32,9 @@ package org.n52.series.db.da;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
@@ -81,7 +84,7 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
 
     @Override
     public List<O> getAllCondensed(DbQuery query, Session session) throws DataAccessException {
-        List<E> allInstances = getAllInstances(query, session);
+        List<E> allInstances = getAllCondensedInstances(query, session);
         List<O> results = createCondensed(allInstances, query, session);
         return results;
     }
@@ -150,6 +153,20 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
         return createDao(session).getAllInstances(parameters);
     }
 
+    /**
+     * @param query
+     *        the query instance
+     * @param session
+     *        the session
+     * @return all instances holding at least the properties needed by
+     *         {@link #createCondensed(DescribableEntity, DbQuery, Session)}
+     * @throws DataAccessException
+     *         if accessing the database fails
+     */
+    protected List<E> getAllCondensedInstances(DbQuery query, Session session) throws DataAccessException {
+        return createDao(session).getAllCondensedInstances(query);
+    }
+
     @Override
     public O getInstance(String id, DbQuery query) throws DataAccessException {
         Session session = getSession();
@@ -167,6 +184,50 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
         return createExpanded(entity, query, session);
     }
 
+    @Override
+    public List<O> getInstances(Collection<String> ids, DbQuery query) throws DataAccessException {
+        if (query.isMatchDomainIds()) {
+            return OutputAssembler.super.getInstances(ids, query);
+        }
+        Session session = getSession();
+        try {
+            return getInstances(ids, query, session);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    /**
+     * @param ids
+     *        the ids of the instances
+     * @param query
+     *        the query instance
+     * @param session
+     *        the session
+     * @return the expanded outputs in order of the given ids
+     * @throws DataAccessException
+     *         if accessing the database fails
+     * @throws ResourceNotFoundException
+     *         if one of the instances could not be found or does not match the query
+     */
+    protected List<O> getInstances(Collection<String> ids, DbQuery query, Session session)
+            throws DataAccessException {
+        List<Long> pkids = new ArrayList<>();
+        for (String id : ids) {
+            pkids.add(parseId(id));
+        }
+        List<O> results = new ArrayList<>();
+        for (E entity : getEntities(pkids, createDao(session), query)) {
+            O instance = createExpanded(entity, query, session);
+            if (instance == null) {
+                throw new ResourceNotFoundException("Resource with id '" + entity.getPkid()
+                        + "' could not be found.");
+            }
+            results.add(instance);
+        }
+        return results;
+    }
+
     protected E getInstance(Long id, DbQuery query, Session session) throws DataAccessException {
         AbstractDao<E> dao = createDao(session);
         return getEntity(id, dao, query);
@@ -180,6 +241,34 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
         return entity;
     }
 
+    /**
+     * @param ids
+     *        the ids of the entities
+     * @param dao
+     *        the dao to load the entities with
+     * @param query
+     *        the query instance
+     * @return the entities in order of the given ids
+     * @throws DataAccessException
+     *         if accessing the database fails
+     * @throws ResourceNotFoundException
+     *         if one of the entities could not be found
+     */
+    protected List<E> getEntities(List<Long> ids, AbstractDao<E> dao, DbQuery query) throws DataAccessException {
+        Map<Long, E> entities = dao.getInstances(ids, query)
+                                   .stream()
+                                   .collect(Collectors.toMap(E::getPkid, Function.identity(), (e1, e2) -> e1));
+        List<E> results = new ArrayList<>();
+        for (Long id : ids) {
+            E entity = entities.get(id);
+            if (entity == null) {
+                throw new ResourceNotFoundException("Resource with id '" + id + "' could not be found.");
+            }
+            results.add(entity);
+        }
+        return results;
+    }
+
     @Override
     public Collection<SearchResult> searchFor(IoParameters parameters) {
         Session session = getSession();
@@ -29,9 +29,15 @@
 
 package org.n52.series.db.da;
 
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.partitioningBy;
 import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,6 +56,7 @@ import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.FeatureEntity;
 import org.n52.series.db.beans.GeometryEntity;
 import org.n52.series.db.beans.PlatformEntity;
+import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.dao.AbstractDao;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.series.db.dao.FeatureDao;
@@ -74,6 +81,9 @@ public class PlatformRepository extends ParameterRepository<PlatformEntity, Plat
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PlatformRepository.class);
 
+    // databases limit the size of IN lists, e.g. Oracle to 1000 elements
+    private static final int MAX_FEATURES_PER_QUERY = 1000;
+
     private static final String FILTER_STATIONARY = "stationary";
     private static final String FILTER_MOBILE = "mobile";
     private static final String FILTER_INSITU = "insitu";
@@ -124,6 +134,81 @@ public class PlatformRepository extends ParameterRepository<PlatformEntity, Plat
         return createCondensed(entity, query, session);
     }
 
+    /**
+     * Resolves the condensed platforms of all given features with one dataset query per 1000 features.
+     *
+     * @param featureIds
+     *        the feature ids
+     * @param query
+     *        the query instance
+     * @param session
+     *        the session
+     * @return the condensed platforms mapped by feature id. Features without datasets are not contained.
+     * @throws DataAccessException
+     *         if accessing the database fails
+     */
+    Map<Long, PlatformOutput> createCondensedPlatformsByFeature(Collection<Long> featureIds,
+                                                                DbQuery query,
+                                                                Session session)
+            throws DataAccessException {
+        Map<Long, DatasetEntity> datasetsByFeature = new HashMap<>();
+        List<String> features = new ArrayList<>(MAX_FEATURES_PER_QUERY);
+        for (Long featureId : featureIds) {
+            features.add(String.valueOf(featureId));
+            if (features.size() == MAX_FEATURES_PER_QUERY) {
+                addPreferredDatasets(features, datasetsByFeature, query, session);
+                features = new ArrayList<>(MAX_FEATURES_PER_QUERY);
+            }
+        }
+        if (!features.isEmpty()) {
+            addPreferredDatasets(features, datasetsByFeature, query, session);
+        }
+
+        Map<String, PlatformOutput> platforms = new HashMap<>();
+        Map<Long, PlatformOutput> platformsByFeature = new HashMap<>();
+        for (Map.Entry<Long, DatasetEntity> entry : datasetsByFeature.entrySet()) {
+            DatasetEntity dataset = entry.getValue();
+            String platformId = getPlatformId(dataset);
+            if (!platforms.containsKey(platformId)) {
+                PlatformEntity platform = convertToPlatform(dataset, query);
+                platforms.put(platformId, createCondensed(platform, query, session));
+            }
+            platformsByFeature.put(entry.getKey(), platforms.get(platformId));
+        }
+        return platformsByFeature;
+    }
+
+    private void addPreferredDatasets(List<String> features,
+                                      Map<Long, DatasetEntity> datasetsByFeature,
+                                      DbQuery query,
+                                      Session session)
+            throws DataAccessException {
+        DbQuery datasetQuery = getDbQuery(query.getParameters()
+                                               .extendWith(Parameters.FEATURES, features.toArray(new String[0]))
+                                               .extendWith(Parameters.FILTER_PLATFORM_TYPES, "all"));
+        for (DatasetEntity dataset : seriesRepository.getAllInstances(datasetQuery, session)) {
+            Long featureId = dataset.getFeature().getPkid();
+            datasetsByFeature.merge(featureId, dataset, this::getPreferredPlatformDataset);
+        }
+    }
+
+    private DatasetEntity getPreferredPlatformDataset(DatasetEntity current, DatasetEntity candidate) {
+        // same precedence as platforms are listed
+        return getPlatformRank(candidate) < getPlatformRank(current)
+                ? candidate
+                : current;
+    }
+
+    private int getPlatformRank(DatasetEntity dataset) {
+        ProcedureEntity procedure = dataset.getProcedure();
+        int rank = procedure.isMobile()
+                ? 2
+                : 0;
+        return procedure.isInsitu()
+                ? rank
+                : rank + 1;
+    }
+
     PlatformOutput createCondensedPlatform(String id, DbQuery query, Session session) throws DataAccessException {
         PlatformEntity entity = getEntity(id, query, session);
         return createCondensed(entity, query, session);
@@ -149,6 +234,62 @@ public class PlatformRepository extends ParameterRepository<PlatformEntity, Plat
         return createExpanded(entity, query, session);
     }
 
+    @Override
+    protected List<PlatformOutput> getInstances(Collection<String> ids, DbQuery query, Session session)
+            throws DataAccessException {
+        List<Long> featureIds = new ArrayList<>();
+        List<Long> platformIds = new ArrayList<>();
+        for (String id : ids) {
+            Long pkid = parseId(PlatformType.extractId(id));
+            if (PlatformType.isStationaryId(id)) {
+                featureIds.add(pkid);
+            } else {
+                platformIds.add(pkid);
+            }
+        }
+        Map<Long, FeatureEntity> features = new HashMap<>();
+        if (!featureIds.isEmpty()) {
+            createFeatureDao(session).getInstances(featureIds, query)
+                                     .forEach(feature -> features.put(feature.getPkid(), feature));
+        }
+        Map<Long, PlatformEntity> platforms = new HashMap<>();
+        if (!platformIds.isEmpty()) {
+            createPlatformDao(session).getInstances(platformIds, query)
+                                      .forEach(platform -> platforms.put(platform.getPkid(), platform));
+        }
+
+        Map<String, PlatformEntity> entities = new LinkedHashMap<>();
+        for (String id : ids) {
+            Long pkid = parseId(PlatformType.extractId(id));
+            if (PlatformType.isStationaryId(id)) {
+                FeatureEntity feature = features.get(pkid);
+                if (feature == null) {
+                    throwNewResourceNotFoundException("Station", id);
+                }
+                entities.put(id, PlatformType.isInsitu(id)
+                        ? convertInsitu(feature, query)
+                        : convertRemote(feature, query));
+            } else {
+                PlatformEntity platform = platforms.get(pkid);
+                if (platform == null) {
+                    throwNewResourceNotFoundException("Platform", id);
+                }
+                entities.put(id, platform);
+            }
+        }
+        Map<String, PlatformOutput> outputs = createExpandedById(entities.values(), query, session);
+        List<PlatformOutput> results = new ArrayList<>();
+        for (String id : ids) {
+            PlatformOutput output = outputs.get(getPlatformId(entities.get(id)));
+            if (output == null) {
+                // does not match the spatial filter or has no geometry
+                throwNewResourceNotFoundException("Platform", id);
+            }
+            results.add(output);
+        }
+        return results;
+    }
+
     PlatformEntity getEntity(String id, DbQuery parameters, Session session) throws DataAccessException {
         if (PlatformType.isStationaryId(id)) {
             return getStation(id, parameters, session);
@@ -170,69 +311,158 @@ public class PlatformRepository extends ParameterRepository<PlatformEntity, Plat
     @Override
     protected PlatformOutput createExpanded(PlatformEntity entity, DbQuery query, Session session)
             throws DataAccessException {
-        PlatformOutput result = createCondensed(entity, query, session);
+        List<PlatformOutput> results = createExpanded(Collections.singletonList(entity), query, session);
+        return results.isEmpty()
+                ? null
+                : results.get(0);
+    }
+
+    /**
+     * Assembles expanded outputs for all platforms at once. Datasets of stationary and of mobile platforms
+     * are loaded within one query each and last known geometries of mobile platforms are resolved in bulk
+     * per value type.
+     */
+    @Override
+    protected List<PlatformOutput> createExpanded(Iterable<PlatformEntity> entities, DbQuery query, Session session)
+            throws DataAccessException {
+        return new ArrayList<>(createExpandedById(entities, query, session).values());
+    }
+
+    /**
+     * @return the expanded outputs in order of the given entities mapped by platform id. Platforms not
+     *         matching the spatial filter are not contained.
+     */
+    private Map<String, PlatformOutput> createExpandedById(Iterable<PlatformEntity> entities,
+                                                           DbQuery query,
+                                                           Session session)
+            throws DataAccessException {
+        Map<String, PlatformEntity> platforms = new LinkedHashMap<>();
+        Map<String, PlatformOutput> outputs = new HashMap<>();
+        for (PlatformEntity entity : entities) {
+            String id = getPlatformId(entity);
+            platforms.put(id, entity);
+            outputs.put(id, createCondensed(entity, query, session));
+        }
+        Map<String, PlatformOutput> results = new LinkedHashMap<>();
+        if (platforms.isEmpty()) {
+            return results;
+        }
+
         DbQuery platformQuery = getDbQuery(query.getParameters()
-                                           .extendWith(Parameters.PLATFORMS, result.getId())
                                            .removeAllOf(Parameters.FILTER_PLATFORM_TYPES));
         DbQuery datasetQuery = getDbQuery(platformQuery.getParameters()
                                                        .removeAllOf(Parameters.BBOX)
                                                        .removeAllOf(Parameters.NEAR)
                                                        .removeAllOf(Parameters.ODATA_FILTER));
+        Map<String, List<DatasetEntity>> datasetsByPlatform = new HashMap<>();
+        for (List<String> platformIds : groupByDatasetFilter(platforms.keySet())) {
+            DbQuery platformDatasetQuery = getDbQuery(datasetQuery.getParameters()
+                                                                  .extendWith(Parameters.PLATFORMS,
+                                                                              platformIds.toArray(new String[0])));
+            datasetsByPlatform.putAll(seriesRepository.getAllInstances(platformDatasetQuery, session)
+                                                      .stream()
+                                                      .collect(groupingBy(this::getPlatformId)));
+        }
 
-        List<DatasetOutput> datasets = seriesRepository.getAllCondensed(datasetQuery);
-        result.setValue(PlatformOutput.DATASETS, datasets, query.getParameters(), result::setDatasets);
-
-        Geometry geometry = entity.getGeometry() == null
-                ? getLastSamplingGeometry(datasets, platformQuery, session)
-                : entity.getGeometry();
-
-        if (geometry == null) {
-            // spatial filter does not match
-            return null;
+        Map<String, DatasetEntity> lastDatasets = new HashMap<>();
+        for (Map.Entry<String, PlatformEntity> platform : platforms.entrySet()) {
+            String id = platform.getKey();
+            if (platform.getValue().getGeometry() == null && datasetsByPlatform.containsKey(id)) {
+                lastDatasets.put(id, getLastDataset(datasetsByPlatform.get(id)));
+            }
         }
+        Map<String, Geometry> lastGeometries = getLastSamplingGeometries(lastDatasets, platformQuery, session);
+
+        for (Map.Entry<String, PlatformEntity> platform : platforms.entrySet()) {
+            String id = platform.getKey();
+            PlatformEntity entity = platform.getValue();
+            PlatformOutput result = outputs.get(id);
+            List<DatasetOutput> datasets = new ArrayList<>();
+            for (DatasetEntity dataset : datasetsByPlatform.getOrDefault(id, Collections.emptyList())) {
+                datasets.add(seriesRepository.createCondensed(dataset, datasetQuery, session));
+            }
+            result.setValue(PlatformOutput.DATASETS, datasets, query.getParameters(), result::setDatasets);
 
-        result.setValue(PlatformOutput.GEOMETRY, geometry, query.getParameters(), result::setGeometry);
-        Set<Map<String, Object>> parameters = entity.getMappedParameters(query.getLocale());
-        result.setValue(PlatformOutput.PARAMETERS, parameters, query.getParameters(), result::setParameters);
-        return result;
-    }
+            Geometry geometry = entity.getGeometry() == null
+                    ? lastGeometries.get(id)
+                    : entity.getGeometry();
 
-    private Geometry getLastSamplingGeometry(List<DatasetOutput> datasets, DbQuery query, Session session)
-            throws DataAccessException {
+            if (geometry == null) {
+                // spatial filter does not match
+                continue;
+            }
+
+            result.setValue(PlatformOutput.GEOMETRY, geometry, query.getParameters(), result::setGeometry);
+            Set<Map<String, Object>> parameters = entity.getMappedParameters(query.getLocale());
+            result.setValue(PlatformOutput.PARAMETERS, parameters, query.getParameters(), result::setParameters);
+            results.put(id, result);
+        }
+        return results;
+    }
+
+    private String getPlatformId(PlatformEntity entity) {
+        // same id as created for the platform of a dataset
+        return entity.getPlatformType()
+                     .createId(entity.getPkid());
+    }
+
+    /**
+     * Groups platform ids by the dataset filter they are resolved with. Stationary platforms filter datasets
+     * by feature, mobile platforms by procedure. Both filters are combined conjunctively, so each group has
+     * to be queried separately.
+     *
+     * @param platformIds
+     *        the platform ids
+     * @return the non-empty groups of stationary and mobile platform ids
+     */
+    static List<List<String>> groupByDatasetFilter(Collection<String> platformIds) {
+        return platformIds.stream()
+                          .collect(partitioningBy(PlatformType::isStationaryId))
+                          .values()
+                          .stream()
+                          .filter(group -> !group.isEmpty())
+                          .collect(toList());
+    }
+
+    private Map<String, Geometry> getLastSamplingGeometries(Map<String, DatasetEntity> lastDatasets,
+                                                            DbQuery query,
+                                                            Session session) {
         // XXX fix generics and inheritance of Data, AbstractValue, etc.
         // https://trello.com/c/dMVa0fg9/78-refactor-data-abstractvalue
-        DatasetEntity< ? > lastDataset = getLastDataset(datasets, query, session);
-        try {
-            DataRepository dataRepository = factory.create(lastDataset.getValueType());
-            GeometryEntity lastKnownGeometry = dataRepository.getLastKnownGeometry(lastDataset, session, query);
-
-            return isValidGeometry(lastKnownGeometry)
-                    && matchesSpatialFilter(lastKnownGeometry, query)
-                            ? lastKnownGeometry.getGeometry()
-                            : null;
-        } catch (DatasetFactoryException e) {
-            LOGGER.error("Couldn't create data repository to determing last value of dataset '{}'",
-                         lastDataset.getPkid());
+        Map<Long, GeometryEntity> lastKnownGeometries = new HashMap<>();
+        Map<String, List<DatasetEntity>> datasetsByValueType = lastDatasets.values()
+                                                                           .stream()
+                                                                           .collect(groupingBy(
+                                                                               DatasetEntity::getValueType));
+        for (Map.Entry<String, List<DatasetEntity>> entry : datasetsByValueType.entrySet()) {
+            try {
+                DataRepository dataRepository = factory.create(entry.getKey());
+                lastKnownGeometries.putAll(dataRepository.getLastKnownGeometries(entry.getValue(), session, query));
+            } catch (DatasetFactoryException e) {
+                LOGGER.error("Couldn't create data repository to determine last values of '{}' datasets",
+                             entry.getKey());
+            }
         }
-        return null;
+
+        Map<String, Geometry> geometries = new HashMap<>();
+        for (Map.Entry<String, DatasetEntity> lastDataset : lastDatasets.entrySet()) {
+            GeometryEntity geometry = lastKnownGeometries.get(lastDataset.getValue().getPkid());
+            if (isValidGeometry(geometry) && matchesSpatialFilter(geometry, query)) {
+                geometries.put(lastDataset.getKey(), geometry.getGeometry());
+            }
+        }
+        return geometries;
     }
 
-    private DatasetEntity getLastDataset(List<DatasetOutput> datasets, DbQuery query, Session session)
-            throws DataAccessException {
+    private DatasetEntity getLastDataset(List<DatasetEntity> datasets) {
         DatasetEntity< ? > currentLastDataset = null;
-        for (DatasetOutput dataset : datasets) {
-            String id = dataset.getId();
-            DbQuery datasetQuery = getDbQuery(query.getParameters()
-                                              .removeAllOf(Parameters.BBOX)
-                                              .removeAllOf(Parameters.NEAR)
-                                              .removeAllOf(Parameters.ODATA_FILTER));
-            DatasetEntity< ? > entity = seriesRepository.getInstanceEntity(id, datasetQuery, session);
+        for (DatasetEntity< ? > dataset : datasets) {
             if (currentLastDataset == null) {
-                currentLastDataset = entity;
+                currentLastDataset = dataset;
             } else {
                 if (currentLastDataset.getLastValueAt()
-                                      .after(entity.getLastValueAt())) {
-                    currentLastDataset = entity;
+                                      .after(dataset.getLastValueAt())) {
+                    currentLastDataset = dataset;
                 }
             }
         }
@@ -284,6 +514,13 @@ public class PlatformRepository extends ParameterRepository<PlatformEntity, Plat
         return platforms;
     }
 
+    @Override
+    protected List<PlatformEntity> getAllCondensedInstances(DbQuery query, Session session)
+            throws DataAccessException {
+        // platform type is part of condensed output
+        return getAllInstances(query, session);
+    }
+
     private List<PlatformEntity> getAllStationary(DbQuery query, Session session) throws DataAccessException {
         List<PlatformEntity> platforms = new ArrayList<>();
         FilterResolver filterResolver = query.getFilterResolver();
@@ -357,6 +594,24 @@ public class PlatformRepository extends ParameterRepository<PlatformEntity, Plat
         return platform;
     }
 
+    private PlatformEntity convertToPlatform(DatasetEntity dataset, DbQuery query) {
+        ProcedureEntity procedure = dataset.getProcedure();
+        if (!procedure.isMobile()) {
+            return procedure.isInsitu()
+                    ? convertInsitu(dataset.getFeature(), query)
+                    : convertRemote(dataset.getFeature(), query);
+        }
+        PlatformEntity result = new PlatformEntity();
+        result.setDomainId(procedure.getDomainId());
+        result.setPkid(procedure.getPkid());
+        result.setName(procedure.getName());
+        result.setTranslations(procedure.getTranslations());
+        result.setDescription(procedure.getDescription());
+        result.setMobile(true);
+        result.setInsitu(procedure.isInsitu());
+        return result;
+    }
+
     private PlatformEntity convertToPlatform(FeatureEntity entity, DbQuery query) {
         PlatformEntity result = new PlatformEntity();
         result.setDomainId(entity.getDomainId());
@@ -30,6 +30,8 @@
 package org.n52.series.db.da;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -47,6 +49,7 @@ import org.n52.series.db.beans.ProfileDataEntity;
 import org.n52.series.db.beans.ProfileDatasetEntity;
 import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.ProfileDataDao;
 
 public abstract class ProfileDataRepository<T, P extends ProfileDatasetEntity>
         extends AbstractDataRepository<P, ProfileDataEntity, ProfileValue<T>> {
@@ -67,6 +70,18 @@ public abstract class ProfileDataRepository<T, P extends ProfileDatasetEntity>
         return super.getLastValue(dataset, session, query);
     }
 
+    @Override
+    public Map<Long, ProfileValue<T>> getFirstValues(Collection<P> datasets, Session session, DbQuery query) {
+        query.setComplexParent(true);
+        return super.getFirstValues(datasets, session, query);
+    }
+
+    @Override
+    public Map<Long, ProfileValue<T>> getLastValues(Collection<P> datasets, Session session, DbQuery query) {
+        query.setComplexParent(true);
+        return super.getLastValues(datasets, session, query);
+    }
+
     protected boolean isVertical(Map<String, Object> parameterObject, String verticalName) {
         if (parameterObject.containsKey(PARAMETER_NAME)) {
             String value = (String) parameterObject.get(PARAMETER_NAME);
@@ -82,6 +97,9 @@ public abstract class ProfileDataRepository<T, P extends ProfileDatasetEntity>
         Data<ProfileValue<T>> result = new Data<>();
         DataDao<ProfileDataEntity> dao = createDataDao(session);
         List<ProfileDataEntity> observations = dao.getAllInstancesFor(datasetEntity, query);
+        if (query.isSetVerticalFilter()) {
+            observations = filterVertical(observations, datasetEntity, query, session);
+        }
         for (ProfileDataEntity observation : observations) {
             if (observation != null) {
                 result.addValues(createSeriesValueFor(observation, datasetEntity, query));
@@ -90,6 +108,35 @@ public abstract class ProfileDataRepository<T, P extends ProfileDatasetEntity>
         return result;
     }
 
+    /**
+     * Replaces the child observations of each profile by those matching the vertical range of the query.
+     * Matching children are selected by the database, so layers outside the range are never loaded.
+     * Profiles without any matching layer are dropped.
+     */
+    private List<ProfileDataEntity> filterVertical(List<ProfileDataEntity> observations,
+                                                   P datasetEntity,
+                                                   DbQuery query,
+                                                   Session session) {
+        Set<Long> profileIds = new HashSet<>();
+        for (ProfileDataEntity observation : observations) {
+            if (observation != null) {
+                profileIds.add(observation.getPkid());
+            }
+        }
+        ProfileDataDao dao = new ProfileDataDao(session);
+        Map<Long, Set<DataEntity< ? >>> children = dao.getChildrenWithinVertical(profileIds, datasetEntity, query);
+        List<ProfileDataEntity> filtered = new ArrayList<>();
+        for (ProfileDataEntity observation : observations) {
+            if (observation != null && children.containsKey(observation.getPkid())) {
+                // detach so the replaced collection will never be flushed
+                session.evict(observation);
+                observation.setValue(children.get(observation.getPkid()));
+                filtered.add(observation);
+            }
+        }
+        return filtered;
+    }
+
     @Override
     protected Data<ProfileValue<T>> assembleDataWithReferenceValues(P datasetEntity,
                                                                     DbQuery dbQuery,
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Mergeable quantile sketch with relative value accuracy (logarithmic buckets, as known from DDSketch).
+ * Values are counted in buckets whose bounds grow by the factor <code>(1 + a) / (1 - a)</code>, where
+ * <code>a</code> is the relative accuracy. Merging sketches of the same accuracy is lossless, so sketches of
+ * single days can be combined to sketches of arbitrary ranges.
+ * <p>
+ * Error bounds: for any quantile, the returned value <code>v</code> differs from the value <code>x</code> at
+ * the exact (nearest) rank by at most <code>a * |x|</code>. Values with an absolute value smaller than
+ * {@value #MIN_INDEXABLE_VALUE} are treated as zero. Minimum and maximum are tracked exactly, and results are
+ * clamped to them. The size of a sketch is bounded by the value range, not by the number of values (about
+ * 1000 buckets to cover nine orders of magnitude with an accuracy of 1%).
+ */
+public final class QuantileSketch {
+
+    static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private final NavigableMap<Integer, Long> positiveBuckets = new TreeMap<>();
+
+    private final NavigableMap<Integer, Long> negativeBuckets = new TreeMap<>();
+
+    private long zeroCount;
+
+    private long count;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param relativeAccuracy
+     *        the relative accuracy of values returned, e.g. <code>0.01</code> for 1%
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be within (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value >= MIN_INDEXABLE_VALUE) {
+            increment(positiveBuckets, index(value), 1);
+        } else if (value <= -MIN_INDEXABLE_VALUE) {
+            increment(negativeBuckets, index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all values of the given sketch to this sketch.
+     *
+     * @param other
+     *        a sketch of the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (Double.compare(relativeAccuracy, other.relativeAccuracy) != 0) {
+            throw new IllegalArgumentException("Cannot merge sketches of different accuracy: "
+                    + relativeAccuracy + " vs. " + other.relativeAccuracy);
+        }
+        for (Map.Entry<Integer, Long> bucket : other.positiveBuckets.entrySet()) {
+            increment(positiveBuckets, bucket.getKey(), bucket.getValue());
+        }
+        for (Map.Entry<Integer, Long> bucket : other.negativeBuckets.entrySet()) {
+            increment(negativeBuckets, bucket.getKey(), bucket.getValue());
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @param quantile
+     *        the quantile within <code>[0, 1]</code>
+     * @return the approximated value at rank <code>ceil(quantile * count)</code>, or {@link Double#NaN} if the
+     *         sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        if (isEmpty()) {
+            return Double.NaN;
+        }
+        long rank = getRank(quantile, count);
+        if (rank == 1) {
+            return min;
+        } else if (rank == count) {
+            return max;
+        }
+        long seen = 0;
+        // ascending values: large negatives first
+        for (Map.Entry<Integer, Long> bucket : negativeBuckets.descendingMap()
+                                                               .entrySet()) {
+            seen += bucket.getValue();
+            if (seen >= rank) {
+                return clamp(-value(bucket.getKey()));
+            }
+        }
+        seen += zeroCount;
+        if (seen >= rank) {
+            return clamp(0);
+        }
+        for (Map.Entry<Integer, Long> bucket : positiveBuckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen >= rank) {
+                return clamp(value(bucket.getKey()));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Exact counterpart of {@link #getQuantile(double)}.
+     *
+     * @param sortedValues
+     *        values in ascending order
+     * @param quantile
+     *        the quantile within <code>[0, 1]</code>
+     * @return the value at rank <code>ceil(quantile * count)</code>, or {@link Double#NaN} if no values given
+     */
+    public static double getExactQuantile(double[] sortedValues, double quantile) {
+        return sortedValues.length > 0
+                ? sortedValues[(int) getRank(quantile, sortedValues.length) - 1]
+                : Double.NaN;
+    }
+
+    /**
+     * @param values
+     *        the values (get sorted in place)
+     * @param quantiles
+     *        the quantiles within <code>[0, 1]</code>
+     * @return the exact values of the quantiles
+     */
+    public static double[] getExactQuantiles(double[] values, double[] quantiles) {
+        Arrays.sort(values);
+        double[] result = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            result[i] = getExactQuantile(values, quantiles[i]);
+        }
+        return result;
+    }
+
+    private static long getRank(double quantile, long count) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be within [0, 1]: " + quantile);
+        }
+        return Math.max(1, (long) Math.ceil(quantile * count));
+    }
+
+    private int index(double positiveValue) {
+        return (int) Math.ceil(Math.log(positiveValue) / logGamma);
+    }
+
+    private double value(int index) {
+        // center of bucket (gamma^(i-1), gamma^i] with respect to relative error
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static void increment(NavigableMap<Integer, Long> buckets, int index, long increment) {
+        Long current = buckets.get(index);
+        buckets.put(index, current != null
+                ? current + increment
+                : increment);
+    }
+
+}
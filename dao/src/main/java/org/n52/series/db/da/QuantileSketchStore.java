@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.dao.DataChunkCache;
+import org.n52.series.db.dao.QuantityDataDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Holds a {@link QuantileSketch} per quantity dataset and (UTC) day, so that quantiles over long timespans
+ * can be approximated by merging day sketches instead of sorting all values. Partial days at the edges of a
+ * timespan are added with their raw values. Timespans shorter than a configurable range are computed
+ * exactly.
+ * <p>
+ * Sketches are not persisted but kept as bounded in-memory memo cache: sketches of missing days are computed
+ * synchronously when first requested, so the first approximated request of a dataset and timespan costs as
+ * much as computing the quantiles exactly. A background job keeps the sketches of datasets requested within
+ * the last days up to date, i.e. adds the sketches of days closed since. Only closed days are kept. After a
+ * restart (or eviction) all sketches are computed again on demand.
+ * <p>
+ * Datasets reported as changed by the {@link DataChunkCache} (see <code>dao/src/extension/data-cache</code>)
+ * have all their sketches invalidated, so they are computed again on the next request or update. Like data
+ * chunks, a day is considered closed only after the cache's closing grace period, as inserts within that
+ * period are not tracked. Changes are therefore reflected after the change check interval at the latest.
+ * Without change tracking, observations inserted, corrected or deleted after their day has been closed are
+ * reflected only once the day's sketch has been evicted or after restart.
+ * <p>
+ * Quantiles refer to observations ending within the timespan (start inclusive, end exclusive) and are
+ * nearest-rank quantiles. Approximated values are within the sketch's relative accuracy of the exact value
+ * (see {@link QuantileSketch}).
+ */
+public class QuantileSketchStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuantileSketchStore.class);
+
+    private static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // same tolerance as QuantityDataEntity#isNoDataValue()
+    private static final BigDecimal NO_DATA_TOLERANCE = new BigDecimal("0.0001");
+
+    private static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private static final String DEFAULT_EXACT_RANGE = "P31D";
+
+    private static final long DEFAULT_MAXIMUM_SKETCHES = 100000;
+
+    private static final String DEFAULT_UPDATE_INTERVAL = "PT1H";
+
+    private static final long MAXIMUM_TRACKED_DATASETS = 1000;
+
+    private static final long TRACKING_TIMEOUT_IN_DAYS = 7;
+
+    private final Cache<DayKey, QuantileSketch> sketches;
+
+    private final Cache<Long, TrackedDataset> trackedDatasets;
+
+    private final ScheduledExecutorService executor;
+
+    private final double relativeAccuracy;
+
+    private final long exactRangeInMillis;
+
+    private final long updateIntervalInMillis;
+
+    @Autowired
+    private HibernateSessionStore sessionStore;
+
+    @Autowired(required = false)
+    private DataChunkCache dataChunkCache;
+
+    public QuantileSketchStore() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_EXACT_RANGE, DEFAULT_MAXIMUM_SKETCHES, DEFAULT_UPDATE_INTERVAL);
+    }
+
+    /**
+     * @param relativeAccuracy
+     *        the relative accuracy of approximated quantiles, e.g. <code>0.01</code> for 1%
+     * @param exactRange
+     *        timespans shorter than this ISO8601 period of fixed length are computed exactly
+     * @param maximumSketches
+     *        the maximum number of day sketches to keep
+     * @param updateInterval
+     *        the update interval of the background job as ISO8601 period of fixed length
+     */
+    public QuantileSketchStore(double relativeAccuracy,
+                               String exactRange,
+                               long maximumSketches,
+                               String updateInterval) {
+        this.relativeAccuracy = relativeAccuracy;
+        this.exactRangeInMillis = toMillis(exactRange);
+        this.updateIntervalInMillis = toMillis(updateInterval);
+        this.sketches = CacheBuilder.newBuilder()
+                                    .maximumSize(maximumSketches)
+                                    .build();
+        this.trackedDatasets = CacheBuilder.newBuilder()
+                                           .maximumSize(MAXIMUM_TRACKED_DATASETS)
+                                           .expireAfterAccess(TRACKING_TIMEOUT_IN_DAYS, TimeUnit.DAYS)
+                                           .build();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quantile-sketches");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static long toMillis(String period) {
+        return Period.parse(period)
+                     .toStandardDuration()
+                     .getMillis();
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::update,
+                                        updateIntervalInMillis,
+                                        updateIntervalInMillis,
+                                        TimeUnit.MILLISECONDS);
+        if (dataChunkCache != null) {
+            dataChunkCache.addChangeListener(this::invalidate);
+        }
+    }
+
+    public void shutdown() {
+        LOGGER.info("Closing '{}'", getClass().getSimpleName());
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param datasetId
+     *        the id of the quantity dataset
+     * @param timespan
+     *        the timespan observations have to end in
+     * @param quantiles
+     *        the quantiles within <code>[0, 1]</code>
+     * @param noDataValues
+     *        the no-data values to ignore
+     * @param session
+     *        the session to load values with
+     * @return the (approximated) values of the quantiles, {@link Double#NaN} if there are no values
+     */
+    public double[] getQuantiles(Long datasetId,
+                                 Interval timespan,
+                                 double[] quantiles,
+                                 Collection<BigDecimal> noDataValues,
+                                 Session session) {
+        QuantityDataDao dao = new QuantityDataDao(session);
+        long start = timespan.getStartMillis();
+        long end = timespan.getEndMillis();
+        long firstDay = floorToDay(start) == start
+                ? start
+                : floorToDay(start) + DAY_IN_MILLIS;
+        long lastDay = floorToDay(end);
+        if (end - start < exactRangeInMillis || firstDay >= lastDay) {
+            return getExactQuantiles(dao, datasetId, timespan, quantiles, noDataValues);
+        }
+
+        LOGGER.debug("approximate quantiles of dataset '{}' for {}", datasetId, timespan);
+        QuantileSketch sketch = new QuantileSketch(relativeAccuracy);
+        addValues(sketch, dao, datasetId, start, firstDay, noDataValues);
+        addValues(sketch, dao, datasetId, lastDay, end, noDataValues);
+        for (QuantileSketch daySketch : getDaySketches(dao, datasetId, firstDay, lastDay, noDataValues)) {
+            sketch.merge(daySketch);
+        }
+        track(datasetId, firstDay, noDataValues);
+
+        double[] result = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            result[i] = sketch.getQuantile(quantiles[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Computes quantiles exactly by sorting all values.
+     *
+     * @param dao
+     *        the dao to load values with
+     * @param datasetId
+     *        the id of the quantity dataset
+     * @param timespan
+     *        the timespan observations have to end in
+     * @param quantiles
+     *        the quantiles within <code>[0, 1]</code>
+     * @param noDataValues
+     *        the no-data values to ignore
+     * @return the values of the quantiles, {@link Double#NaN} if there are no values
+     */
+    public static double[] getExactQuantiles(QuantityDataDao dao,
+                                             Long datasetId,
+                                             Interval timespan,
+                                             double[] quantiles,
+                                             Collection<BigDecimal> noDataValues) {
+        List<Object[]> rows = dao.getValues(datasetId, timespan);
+        double[] values = new double[rows.size()];
+        int size = 0;
+        for (Object[] row : rows) {
+            BigDecimal value = (BigDecimal) row[1];
+            if (!isNoDataValue(value, noDataValues)) {
+                values[size++] = value.doubleValue();
+            }
+        }
+        return QuantileSketch.getExactQuantiles(Arrays.copyOf(values, size), quantiles);
+    }
+
+    void update() {
+        if (trackedDatasets.size() == 0) {
+            return;
+        }
+        Session session = sessionStore.getSession();
+        try {
+            QuantityDataDao dao = new QuantityDataDao(session);
+            long today = floorToDay(System.currentTimeMillis());
+            for (Map.Entry<Long, TrackedDataset> entry : trackedDatasets.asMap()
+                                                                        .entrySet()) {
+                TrackedDataset tracked = entry.getValue();
+                getDaySketches(dao, entry.getKey(), tracked.firstDay, today, tracked.noDataValues);
+                session.clear();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not update quantile sketches.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    /**
+     * Invalidates all day sketches of the given datasets.
+     *
+     * @param datasetIds
+     *        the ids of the datasets whose observations changed
+     */
+    void invalidate(Collection<Long> datasetIds) {
+        LOGGER.debug("invalidate quantile sketches of datasets {}", datasetIds);
+        sketches.asMap()
+                .keySet()
+                .removeIf(key -> datasetIds.contains(key.datasetId));
+    }
+
+    private void track(Long datasetId, long firstDay, Collection<BigDecimal> noDataValues) {
+        TrackedDataset tracked = trackedDatasets.getIfPresent(datasetId);
+        long trackedFirstDay = tracked != null
+                ? Math.min(tracked.firstDay, firstDay)
+                : firstDay;
+        trackedDatasets.put(datasetId, new TrackedDataset(trackedFirstDay, noDataValues));
+    }
+
+    private List<QuantileSketch> getDaySketches(QuantityDataDao dao,
+                                                Long datasetId,
+                                                long firstDay,
+                                                long lastDay,
+                                                Collection<BigDecimal> noDataValues) {
+        List<QuantileSketch> daySketches = new ArrayList<>();
+        Long missingFrom = null;
+        for (long day = firstDay; day < lastDay; day += DAY_IN_MILLIS) {
+            QuantileSketch cached = sketches.getIfPresent(new DayKey(datasetId, day));
+            if (cached == null) {
+                if (missingFrom == null) {
+                    missingFrom = day;
+                }
+            } else {
+                if (missingFrom != null) {
+                    daySketches.addAll(loadDaySketches(dao, datasetId, missingFrom, day, noDataValues));
+                    missingFrom = null;
+                }
+                daySketches.add(cached);
+            }
+        }
+        if (missingFrom != null) {
+            daySketches.addAll(loadDaySketches(dao, datasetId, missingFrom, lastDay, noDataValues));
+        }
+        return daySketches;
+    }
+
+    private Collection<QuantileSketch> loadDaySketches(QuantityDataDao dao,
+                                                       Long datasetId,
+                                                       long firstDay,
+                                                       long lastDay,
+                                                       Collection<BigDecimal> noDataValues) {
+        LOGGER.debug("compute day sketches of dataset '{}' for {}", datasetId, new Interval(firstDay, lastDay));
+        Map<Long, QuantileSketch> daySketches = new TreeMap<>();
+        for (long day = firstDay; day < lastDay; day += DAY_IN_MILLIS) {
+            daySketches.put(day, new QuantileSketch(relativeAccuracy));
+        }
+        for (Object[] row : dao.getValues(datasetId, new Interval(firstDay, lastDay))) {
+            BigDecimal value = (BigDecimal) row[1];
+            QuantileSketch daySketch = daySketches.get(floorToDay(((Date) row[0]).getTime()));
+            if (daySketch != null && !isNoDataValue(value, noDataValues)) {
+                daySketch.add(value.doubleValue());
+            }
+        }
+        long closedBefore = System.currentTimeMillis() - getClosingGrace();
+        for (Map.Entry<Long, QuantileSketch> daySketch : daySketches.entrySet()) {
+            if (daySketch.getKey() + DAY_IN_MILLIS <= closedBefore) {
+                sketches.put(new DayKey(datasetId, daySketch.getKey()), daySketch.getValue());
+            }
+        }
+        return daySketches.values();
+    }
+
+    private long getClosingGrace() {
+        return dataChunkCache != null
+                ? dataChunkCache.getClosingGrace()
+                : 0;
+    }
+
+    private void addValues(QuantileSketch sketch,
+                           QuantityDataDao dao,
+                           Long datasetId,
+                           long start,
+                           long end,
+                           Collection<BigDecimal> noDataValues) {
+        if (start < end) {
+            for (Object[] row : dao.getValues(datasetId, new Interval(start, end))) {
+                BigDecimal value = (BigDecimal) row[1];
+                if (!isNoDataValue(value, noDataValues)) {
+                    sketch.add(value.doubleValue());
+                }
+            }
+        }
+    }
+
+    private static boolean isNoDataValue(BigDecimal value, Collection<BigDecimal> noDataValues) {
+        if (value == null) {
+            return true;
+        }
+        for (BigDecimal noDataValue : noDataValues) {
+            if (noDataValue.subtract(value)
+                           .abs()
+                           .compareTo(NO_DATA_TOLERANCE) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long floorToDay(long millis) {
+        return millis - Math.floorMod(millis, DAY_IN_MILLIS);
+    }
+
+    public void setSessionStore(HibernateSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    public void setDataChunkCache(DataChunkCache dataChunkCache) {
+        this.dataChunkCache = dataChunkCache;
+    }
+
+    private static final class TrackedDataset {
+
+        private final long firstDay;
+
+        private final Collection<BigDecimal> noDataValues;
+
+        private TrackedDataset(long firstDay, Collection<BigDecimal> noDataValues) {
+            this.firstDay = firstDay;
+            this.noDataValues = noDataValues;
+        }
+
+    }
+
+    private static final class DayKey {
+
+        private final Long datasetId;
+
+        private final long day;
+
+        private DayKey(Long datasetId, long day) {
+            this.datasetId = datasetId;
+            this.day = day;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(datasetId, day);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DayKey)) {
+                return false;
+            }
+            DayKey other = (DayKey) obj;
+            return day == other.day
+                    && Objects.equals(datasetId, other.datasetId);
+        }
+
+    }
+
+}
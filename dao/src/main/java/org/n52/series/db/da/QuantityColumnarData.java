@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.n52.io.response.dataset.Data;
+import org.n52.io.response.dataset.quantity.QuantityValue;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Column oriented representation of quantity data without per-value metadata (except result times). Instead
+ * of holding one {@link QuantityValue} (plus a {@link BigDecimal}) per observation, timestamps and values are
+ * held in primitive arrays and no-data values are tracked via a bitmap.
+ * <p>
+ * Values are held unrounded as unscaled <code>long</code> plus scale. The dataset's number of decimals is
+ * applied not before a value gets materialized or serialized (via {@link FixedPrecisionFormatter}). Rounding
+ * is the same as {@link BigDecimal#setScale(int, RoundingMode)} with {@link RoundingMode#HALF_UP}.
+ * <p>
+ * {@link QuantityValue}s are materialized on demand only, i.e. when calling {@link #getValues()} or when
+ * being serialized via {@link QuantityColumnarDataSerializer}. Values have to be added via
+ * {@link #addValue(long, long, BigDecimal, Long)}, {@link #addValues(QuantityValue...)} is not supported.
+ */
+@JsonSerialize(using = QuantityColumnarDataSerializer.class)
+public class QuantityColumnarData extends Data<QuantityValue> {
+
+    private static final long serialVersionUID = 2469651574524911350L;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final int MAX_COMPACT_PRECISION = 18;
+
+    private final int scale;
+
+    private final boolean timeIntervals;
+
+    private long[] timestarts;
+
+    private long[] timeends;
+
+    private long[] resultTimes;
+
+    private long[] unscaledValues;
+
+    private byte[] valueScales;
+
+    private final BitSet noValues = new BitSet();
+
+    // values not fitting into unscaled long and byte scale
+    private final Map<Integer, BigDecimal> largeValues = new HashMap<>();
+
+    private int size;
+
+    /**
+     * @param expectedSize
+     *        the expected number of values
+     * @param scale
+     *        the number of decimals values will be rounded to
+     * @param timeIntervals
+     *        if values shall be materialized with time intervals
+     */
+    public QuantityColumnarData(int expectedSize, int scale, boolean timeIntervals) {
+        int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+        this.scale = scale;
+        this.timeIntervals = timeIntervals;
+        this.timestarts = timeIntervals
+                ? new long[capacity]
+                : null;
+        this.timeends = new long[capacity];
+        this.unscaledValues = new long[capacity];
+        this.valueScales = new byte[capacity];
+    }
+
+    /**
+     * @param timestart
+     *        the observation's start time (ignored if time intervals are not requested)
+     * @param timeend
+     *        the observation's end time
+     * @param value
+     *        the unrounded value or <code>null</code> for no-data values
+     * @param resultTime
+     *        the result time or <code>null</code> if not available
+     */
+    public void addValue(long timestart, long timeend, BigDecimal value, Long resultTime) {
+        ensureCapacity(size + 1);
+        if (timeIntervals) {
+            timestarts[size] = timestart;
+        }
+        timeends[size] = timeend;
+        if (value == null) {
+            noValues.set(size);
+        } else if (isCompact(value)) {
+            unscaledValues[size] = value.unscaledValue()
+                                        .longValue();
+            valueScales[size] = (byte) value.scale();
+        } else {
+            largeValues.put(size, value);
+        }
+        if (resultTime != null) {
+            if (resultTimes == null) {
+                resultTimes = new long[timeends.length];
+                Arrays.fill(resultTimes, NO_TIME);
+            }
+            resultTimes[size] = resultTime;
+        }
+        size++;
+    }
+
+    private boolean isCompact(BigDecimal value) {
+        return value.precision() <= MAX_COMPACT_PRECISION
+                && value.scale() >= Byte.MIN_VALUE
+                && value.scale() <= Byte.MAX_VALUE;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > timeends.length) {
+            int newCapacity = Math.max(capacity, timeends.length * 2);
+            timeends = Arrays.copyOf(timeends, newCapacity);
+            unscaledValues = Arrays.copyOf(unscaledValues, newCapacity);
+            valueScales = Arrays.copyOf(valueScales, newCapacity);
+            if (timestarts != null) {
+                timestarts = Arrays.copyOf(timestarts, newCapacity);
+            }
+            if (resultTimes != null) {
+                int oldCapacity = resultTimes.length;
+                resultTimes = Arrays.copyOf(resultTimes, newCapacity);
+                Arrays.fill(resultTimes, oldCapacity, newCapacity, NO_TIME);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public boolean isTimeIntervals() {
+        return timeIntervals;
+    }
+
+    public boolean isNoValue(int index) {
+        return noValues.get(index);
+    }
+
+    /**
+     * @param index
+     *        the value's index
+     * @return the value rounded to the number of decimals or <code>null</code> for no-data values
+     */
+    public BigDecimal getValue(int index) {
+        if (isNoValue(index)) {
+            return null;
+        }
+        BigDecimal value = largeValues.containsKey(index)
+                ? largeValues.get(index)
+                : BigDecimal.valueOf(unscaledValues[index], valueScales[index]);
+        return value.setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Formats the value without creating a {@link BigDecimal} if possible.
+     *
+     * @param index
+     *        the value's index
+     * @return the value formatted with the number of decimals, or <code>null</code> if the value has to be
+     *         formatted via {@link #getValue(int)}
+     */
+    public String formatValue(int index) {
+        return !isNoValue(index) && !largeValues.containsKey(index)
+                ? FixedPrecisionFormatter.format(unscaledValues[index], valueScales[index], scale)
+                : null;
+    }
+
+    /**
+     * Materializes the value at the given index.
+     *
+     * @param index
+     *        the value's index
+     * @return the materialized value
+     */
+    public QuantityValue createValue(int index) {
+        return createValue(index, getValue(index));
+    }
+
+    QuantityValue createValue(int index, BigDecimal value) {
+        QuantityValue quantityValue = timeIntervals
+                ? new QuantityValue(timestarts[index], timeends[index], value)
+                : new QuantityValue(timeends[index], value);
+        if (resultTimes != null && resultTimes[index] != NO_TIME) {
+            quantityValue.setResultTime(resultTimes[index]);
+        }
+        return quantityValue;
+    }
+
+    /**
+     * Not supported, values have to be added via {@link #addValue(long, long, BigDecimal, Long)}.
+     *
+     * @param values
+     *        ignored
+     * @throws UnsupportedOperationException
+     *         always
+     */
+    @Override
+    public void addValues(QuantityValue... values) {
+        throw new UnsupportedOperationException("Values have to be added via addValue().");
+    }
+
+    /**
+     * Returns an unmodifiable view materializing a new {@link QuantityValue} on each access. Callers iterating the
+     * values more than once should copy the list.
+     *
+     * @return a lazy view of the values
+     */
+    @Override
+    public List<QuantityValue> getValues() {
+        return new AbstractList<QuantityValue>() {
+
+            @Override
+            public QuantityValue get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return createValue(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+}
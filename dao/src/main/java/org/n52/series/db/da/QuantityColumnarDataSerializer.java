@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.n52.io.response.dataset.quantity.QuantityValue;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Serializes {@link QuantityColumnarData} row by row. Each row is materialized right before being written,
+ * so the complete value list never has to be held in memory. All properties but the value are written by
+ * the configured {@link QuantityValue} serializer. The value itself is written pre-formatted with the
+ * dataset's number of decimals, so no {@link java.math.BigDecimal} has to be created for it.
+ */
+public class QuantityColumnarDataSerializer extends StdSerializer<QuantityColumnarData> {
+
+    private static final long serialVersionUID = -3017372413595569498L;
+
+    private static final String VALUES = "values";
+
+    private static final String VALUE = "value";
+
+    public QuantityColumnarDataSerializer() {
+        super(QuantityColumnarData.class);
+    }
+
+    @Override
+    public void serialize(QuantityColumnarData data, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        JsonSerializer<Object> rowSerializer = provider.findValueSerializer(QuantityValue.class);
+        boolean hasValueProperty = hasValueProperty(rowSerializer);
+        gen.writeStartObject();
+        gen.writeArrayFieldStart(VALUES);
+        for (int i = 0; i < data.size(); i++) {
+            if (!hasValueProperty || data.isNoValue(i)) {
+                rowSerializer.serialize(data.createValue(i), gen, provider);
+            } else {
+                writeRow(data, i, rowSerializer, gen, provider);
+            }
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private boolean hasValueProperty(JsonSerializer<Object> rowSerializer) {
+        Iterator<PropertyWriter> properties = rowSerializer.properties();
+        while (properties.hasNext()) {
+            if (VALUE.equals(properties.next()
+                                       .getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeRow(QuantityColumnarData data,
+                          int index,
+                          JsonSerializer<Object> rowSerializer,
+                          JsonGenerator gen,
+                          SerializerProvider provider)
+            throws IOException {
+        // value is written separately
+        QuantityValue row = data.createValue(index, null);
+        gen.writeStartObject();
+        Iterator<PropertyWriter> properties = rowSerializer.properties();
+        while (properties.hasNext()) {
+            PropertyWriter property = properties.next();
+            if (VALUE.equals(property.getName())) {
+                gen.writeFieldName(VALUE);
+                writeValue(data, index, gen);
+            } else {
+                try {
+                    property.serializeAsField(row, gen, provider);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Could not serialize property '" + property.getName() + "'.", e);
+                }
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeValue(QuantityColumnarData data, int index, JsonGenerator gen) throws IOException {
+        String formatted = data.formatValue(index);
+        if (formatted != null) {
+            gen.writeNumber(formatted);
+        } else {
+            gen.writeNumber(data.getValue(index));
+        }
+    }
+
+}
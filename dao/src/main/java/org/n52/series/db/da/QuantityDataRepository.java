@@ -38,6 +38,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.hibernate.Session;
+import org.joda.time.Interval;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.dataset.Data;
 import org.n52.io.response.dataset.DatasetMetadata;
@@ -51,10 +52,29 @@ import org.n52.series.db.beans.QuantityDatasetEntity;
 import org.n52.series.db.beans.ServiceEntity;
 import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.QuantityDataDao;
+import org.n52.series.db.dao.Resampling;
+import org.springframework.beans.factory.annotation.Autowired;
 
 public class QuantityDataRepository extends
         AbstractDataRepository<QuantityDatasetEntity, QuantityDataEntity, QuantityValue> {
 
+    /**
+     * Aggregation returning the intervals where values exceed a threshold instead of single values.
+     */
+    public static final String AGGREGATION_EXCEEDANCE = "exceedance";
+
+    /**
+     * Aggregation returning the values of the requested quantiles over the timespan instead of single values.
+     */
+    public static final String AGGREGATION_QUANTILE = "quantile";
+
+    private static final String QUANTILE_PARAMETER = "quantile";
+
+    // optional, quantiles are computed exactly if not configured
+    @Autowired(required = false)
+    private QuantileSketchStore quantileSketchStore;
+
     @Override
     public Class<QuantityDatasetEntity> getDatasetEntityType() {
         return QuantityDatasetEntity.class;
@@ -147,9 +167,18 @@ public class QuantityDataRepository extends
     @Override
     protected Data<QuantityValue> assembleData(QuantityDatasetEntity seriesEntity, DbQuery query, Session session)
             throws DataAccessException {
-        Data<QuantityValue> result = new Data<>();
+        if (query.isAggregation(AGGREGATION_EXCEEDANCE)) {
+            return assembleExceedances(seriesEntity, query, session);
+        }
+        if (query.isAggregation(AGGREGATION_QUANTILE)) {
+            return assembleQuantiles(seriesEntity, query, session);
+        }
         DataDao<QuantityDataEntity> dao = createDataDao(session);
         List<QuantityDataEntity> observations = dao.getAllInstancesFor(seriesEntity, query);
+        if (isColumnarRepresentable(seriesEntity, query)) {
+            return assembleColumnarData(observations, seriesEntity, query);
+        }
+        Data<QuantityValue> result = new Data<>();
         for (QuantityDataEntity observation : observations) {
             if (observation != null) {
                 result.addValues(createSeriesValueFor(observation, seriesEntity, query));
@@ -158,6 +187,106 @@ public class QuantityDataRepository extends
         return result;
     }
 
+    private Data<QuantityValue> assembleExceedances(QuantityDatasetEntity seriesEntity,
+                                                    DbQuery query,
+                                                    Session session)
+            throws DataAccessException {
+        List<BigDecimal> noDataValues = getNoDataValues(seriesEntity);
+        QuantityDataDao dao = new QuantityDataDao(session);
+        Data<QuantityValue> result = new Data<>();
+        for (QuantityDataEntity exceedance : dao.getExceedances(seriesEntity, query, noDataValues)) {
+            BigDecimal peak = format(exceedance, seriesEntity);
+            result.addValues(new QuantityValue(exceedance.getTimestart()
+                                                         .getTime(),
+                                               exceedance.getTimeend()
+                                                         .getTime(),
+                                               peak));
+        }
+        return result;
+    }
+
+    private Data<QuantityValue> assembleQuantiles(QuantityDatasetEntity seriesEntity,
+                                                  DbQuery query,
+                                                  Session session)
+            throws DataAccessException {
+        double[] quantiles = query.getQuantiles();
+        Interval timespan = query.getTimespan();
+        List<BigDecimal> noDataValues = getNoDataValues(seriesEntity);
+        Long datasetId = seriesEntity.getPkid();
+        double[] values = quantileSketchStore != null
+                ? quantileSketchStore.getQuantiles(datasetId, timespan, quantiles, noDataValues, session)
+                : QuantileSketchStore.getExactQuantiles(new QuantityDataDao(session),
+                                                        datasetId,
+                                                        timespan,
+                                                        quantiles,
+                                                        noDataValues);
+        Data<QuantityValue> result = new Data<>();
+        for (int i = 0; i < quantiles.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                BigDecimal value = BigDecimal.valueOf(values[i])
+                                             .setScale(seriesEntity.getNumberOfDecimals(), RoundingMode.HALF_UP);
+                QuantityValue quantileValue = new QuantityValue(timespan.getStartMillis(),
+                                                                timespan.getEndMillis(),
+                                                                value);
+                Map<String, Object> parameter = new HashMap<>();
+                parameter.put("name", QUANTILE_PARAMETER);
+                parameter.put("value", quantiles[i]);
+                quantileValue.addParameter(parameter);
+                result.addValues(quantileValue);
+            }
+        }
+        return result;
+    }
+
+    private List<BigDecimal> getNoDataValues(QuantityDatasetEntity seriesEntity) {
+        List<BigDecimal> noDataValues = new ArrayList<>();
+        for (String noDataValue : getServiceEntity(seriesEntity).getNoDataValueList()) {
+            try {
+                noDataValues.add(new BigDecimal(noDataValue.trim()));
+            } catch (NumberFormatException e) {
+                // not a quantity no-data value
+            }
+        }
+        return noDataValues;
+    }
+
+    private boolean isColumnarRepresentable(QuantityDatasetEntity dataset, DbQuery query) {
+        // no per-value metadata besides result time (see #addMetadatasIfNeeded)
+        return !query.isExpanded()
+                && !dataset.getPlatform()
+                           .isMobile();
+    }
+
+    private Data<QuantityValue> assembleColumnarData(List<QuantityDataEntity> observations,
+                                                     QuantityDatasetEntity dataset,
+                                                     DbQuery query) {
+        ServiceEntity service = getServiceEntity(dataset);
+        boolean showTimeIntervals = query.getParameters()
+                                         .isShowTimeIntervals();
+        boolean showResultTime = query.isFieldSelected(DbQuery.FIELD_RESULT_TIME);
+        QuantityColumnarData result = new QuantityColumnarData(observations.size(),
+                                                               dataset.getNumberOfDecimals(),
+                                                               showTimeIntervals);
+        for (QuantityDataEntity observation : observations) {
+            if (observation != null) {
+                // number of decimals gets applied on output
+                BigDecimal value = !service.isNoDataValue(observation)
+                        ? observation.getValue()
+                        : null;
+                Date resultTime = observation.getResultTime();
+                result.addValue(observation.getTimestart()
+                                           .getTime(),
+                                observation.getTimeend()
+                                           .getTime(),
+                                value,
+                                showResultTime && resultTime != null
+                                        ? resultTime.getTime()
+                                        : null);
+            }
+        }
+        return result;
+    }
+
     private QuantityValue[] expandToInterval(BigDecimal value, QuantityDatasetEntity series, DbQuery query) {
         QuantityDataEntity referenceStart = new QuantityDataEntity();
         Date startDate = query.getTimespan().getStart().toDate();
@@ -178,6 +307,33 @@ public class QuantityDataRepository extends
 
     }
 
+    @Override
+    protected boolean isResamplingSupported(Resampling resampling) {
+        return true;
+    }
+
+    @Override
+    protected QuantityValue createResampledValue(long time,
+                                                 QuantityDataEntity previous,
+                                                 QuantityDataEntity next,
+                                                 double fraction,
+                                                 QuantityDatasetEntity dataset,
+                                                 DbQuery query) {
+        ServiceEntity service = getServiceEntity(dataset);
+        if (previous == null
+                || service.isNoDataValue(previous)
+                || next != null && service.isNoDataValue(next)) {
+            return new QuantityValue(time, null);
+        }
+        BigDecimal value = previous.getValue();
+        if (next != null) {
+            BigDecimal difference = next.getValue()
+                                        .subtract(value);
+            value = value.add(difference.multiply(BigDecimal.valueOf(fraction)));
+        }
+        return new QuantityValue(time, value.setScale(dataset.getNumberOfDecimals(), RoundingMode.HALF_UP));
+    }
+
     @Override
     public QuantityValue createSeriesValueFor(QuantityDataEntity observation,
                                               QuantityDatasetEntity dataset,
@@ -205,6 +361,14 @@ public class QuantityDataRepository extends
                 : new QuantityValue(end, observationValue);
     }
 
+    public QuantileSketchStore getQuantileSketchStore() {
+        return quantileSketchStore;
+    }
+
+    public void setQuantileSketchStore(QuantileSketchStore quantileSketchStore) {
+        this.quantileSketchStore = quantileSketchStore;
+    }
+
     private BigDecimal format(QuantityDataEntity observation, QuantityDatasetEntity series) {
         if (observation.getValue() == null) {
             return observation.getValue();
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.n52.io.response.dataset.Data;
+import org.n52.io.response.dataset.record.RecordValue;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Column oriented representation of record data without per-value metadata (except result times). Records of
+ * a dataset usually share the same keys, so the keys (the schema) are detected once from the first record
+ * and values are held in one array per key. Records not matching the schema are kept as they are.
+ * <p>
+ * {@link RecordValue}s are materialized on demand only, i.e. when calling {@link #getValues()} or when being
+ * serialized via {@link RecordColumnarDataSerializer}. Values added via {@link #addValues(RecordValue...)}
+ * are not supported.
+ */
+@JsonSerialize(using = RecordColumnarDataSerializer.class)
+public class RecordColumnarData extends Data<RecordValue> {
+
+    private static final long serialVersionUID = -8236004391713093361L;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final boolean timeIntervals;
+
+    private long[] timestarts;
+
+    private long[] timeends;
+
+    private long[] resultTimes;
+
+    private String[] schema;
+
+    private Map<String, Integer> schemaIndexes;
+
+    private Object[][] columns;
+
+    private final BitSet noValues = new BitSet();
+
+    // records not matching the schema
+    private final Map<Integer, Map<String, Object>> irregularValues = new HashMap<>();
+
+    private int size;
+
+    /**
+     * @param expectedSize
+     *        the expected number of values
+     * @param timeIntervals
+     *        if values shall be materialized with time intervals
+     */
+    public RecordColumnarData(int expectedSize, boolean timeIntervals) {
+        int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+        this.timeIntervals = timeIntervals;
+        this.timestarts = timeIntervals
+                ? new long[capacity]
+                : null;
+        this.timeends = new long[capacity];
+    }
+
+    /**
+     * @param timestart
+     *        the observation's start time (ignored if time intervals are not requested)
+     * @param timeend
+     *        the observation's end time
+     * @param value
+     *        the record or <code>null</code> for no-data values
+     * @param resultTime
+     *        the result time or <code>null</code> if not available
+     */
+    public void addValue(long timestart, long timeend, Map<String, Object> value, Long resultTime) {
+        ensureCapacity(size + 1);
+        if (timeIntervals) {
+            timestarts[size] = timestart;
+        }
+        timeends[size] = timeend;
+        if (value == null) {
+            noValues.set(size);
+        } else {
+            if (schema == null) {
+                initSchema(value);
+            }
+            if (matchesSchema(value)) {
+                for (int i = 0; i < schema.length; i++) {
+                    columns[i][size] = value.get(schema[i]);
+                }
+            } else {
+                irregularValues.put(size, value);
+            }
+        }
+        if (resultTime != null) {
+            if (resultTimes == null) {
+                resultTimes = new long[timeends.length];
+                Arrays.fill(resultTimes, NO_TIME);
+            }
+            resultTimes[size] = resultTime;
+        }
+        size++;
+    }
+
+    private void initSchema(Map<String, Object> value) {
+        schema = value.keySet()
+                      .toArray(new String[0]);
+        schemaIndexes = new HashMap<>();
+        columns = new Object[schema.length][];
+        for (int i = 0; i < schema.length; i++) {
+            schemaIndexes.put(schema[i], i);
+            columns[i] = new Object[timeends.length];
+        }
+    }
+
+    private boolean matchesSchema(Map<String, Object> value) {
+        return value.size() == schema.length
+                && schemaIndexes.keySet()
+                                .containsAll(value.keySet());
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > timeends.length) {
+            int newCapacity = Math.max(capacity, timeends.length * 2);
+            timeends = Arrays.copyOf(timeends, newCapacity);
+            if (timestarts != null) {
+                timestarts = Arrays.copyOf(timestarts, newCapacity);
+            }
+            if (resultTimes != null) {
+                int oldCapacity = resultTimes.length;
+                resultTimes = Arrays.copyOf(resultTimes, newCapacity);
+                Arrays.fill(resultTimes, oldCapacity, newCapacity, NO_TIME);
+            }
+            if (columns != null) {
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = Arrays.copyOf(columns[i], newCapacity);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isTimeIntervals() {
+        return timeIntervals;
+    }
+
+    public boolean isNoValue(int index) {
+        return noValues.get(index);
+    }
+
+    /**
+     * @return the keys shared by the records (empty if no record has been added yet)
+     */
+    public List<String> getSchema() {
+        return schema != null
+                ? Collections.unmodifiableList(Arrays.asList(schema))
+                : Collections.emptyList();
+    }
+
+    /**
+     * @param index
+     *        the value's index
+     * @return <code>true</code> if the record at the given index has the keys of {@link #getSchema()}
+     */
+    public boolean matchesSchema(int index) {
+        return !isNoValue(index) && !irregularValues.containsKey(index);
+    }
+
+    /**
+     * @param index
+     *        the value's index
+     * @param schemaIndex
+     *        the index of the key within {@link #getSchema()}
+     * @return the value of the record's key (record has to match the schema)
+     */
+    public Object getSchemaValue(int index, int schemaIndex) {
+        return columns[schemaIndex][index];
+    }
+
+    /**
+     * @param index
+     *        the value's index
+     * @return the record or <code>null</code> for no-data values
+     */
+    public Map<String, Object> getValue(int index) {
+        if (isNoValue(index)) {
+            return null;
+        }
+        if (irregularValues.containsKey(index)) {
+            return irregularValues.get(index);
+        }
+        Map<String, Object> value = new LinkedHashMap<>();
+        for (int i = 0; i < schema.length; i++) {
+            value.put(schema[i], columns[i][index]);
+        }
+        return value;
+    }
+
+    /**
+     * Materializes the value at the given index.
+     *
+     * @param index
+     *        the value's index
+     * @return the materialized value
+     */
+    public RecordValue createValue(int index) {
+        return createValue(index, getValue(index));
+    }
+
+    RecordValue createValue(int index, Map<String, Object> value) {
+        RecordValue recordValue = timeIntervals
+                ? new RecordValue(timestarts[index], timeends[index], value)
+                : new RecordValue(timeends[index], value);
+        if (resultTimes != null && resultTimes[index] != NO_TIME) {
+            recordValue.setResultTime(resultTimes[index]);
+        }
+        return recordValue;
+    }
+
+    /**
+     * Not supported, values have to be added via {@link #addValue(long, long, Map, Long)}.
+     *
+     * @param values
+     *        ignored
+     * @throws UnsupportedOperationException
+     *         always
+     */
+    @Override
+    public void addValues(RecordValue... values) {
+        throw new UnsupportedOperationException("Values have to be added via addValue().");
+    }
+
+    /**
+     * Returns an unmodifiable view materializing a new {@link RecordValue} on each access. Callers iterating the
+     * values more than once should copy the list.
+     *
+     * @return a lazy view of the values
+     */
+    @Override
+    public List<RecordValue> getValues() {
+        return new AbstractList<RecordValue>() {
+
+            @Override
+            public RecordValue get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return createValue(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.n52.io.response.dataset.record.RecordValue;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Serializes {@link RecordColumnarData} row by row. Each row is materialized right before being written, so
+ * the complete value list never has to be held in memory. All properties but the value are written by the
+ * configured {@link RecordValue} serializer. Records matching the shared schema are written directly from the
+ * columns, with the (pre-encoded) schema keys as field names, so no map has to be created per record.
+ */
+public class RecordColumnarDataSerializer extends StdSerializer<RecordColumnarData> {
+
+    private static final long serialVersionUID = 5573046381407392045L;
+
+    private static final String VALUES = "values";
+
+    private static final String VALUE = "value";
+
+    public RecordColumnarDataSerializer() {
+        super(RecordColumnarData.class);
+    }
+
+    @Override
+    public void serialize(RecordColumnarData data, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        JsonSerializer<Object> rowSerializer = provider.findValueSerializer(RecordValue.class);
+        boolean hasValueProperty = hasValueProperty(rowSerializer);
+        SerializableString[] keys = encodeSchema(data.getSchema());
+        gen.writeStartObject();
+        gen.writeArrayFieldStart(VALUES);
+        for (int i = 0; i < data.size(); i++) {
+            if (!hasValueProperty || !data.matchesSchema(i)) {
+                rowSerializer.serialize(data.createValue(i), gen, provider);
+            } else {
+                writeRow(data, i, keys, rowSerializer, gen, provider);
+            }
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private SerializableString[] encodeSchema(List<String> schema) {
+        SerializableString[] keys = new SerializableString[schema.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new SerializedString(schema.get(i));
+        }
+        return keys;
+    }
+
+    private boolean hasValueProperty(JsonSerializer<Object> rowSerializer) {
+        Iterator<PropertyWriter> properties = rowSerializer.properties();
+        while (properties.hasNext()) {
+            if (VALUE.equals(properties.next()
+                                       .getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeRow(RecordColumnarData data,
+                          int index,
+                          SerializableString[] keys,
+                          JsonSerializer<Object> rowSerializer,
+                          JsonGenerator gen,
+                          SerializerProvider provider)
+            throws IOException {
+        // value is written separately
+        RecordValue row = data.createValue(index, null);
+        gen.writeStartObject();
+        Iterator<PropertyWriter> properties = rowSerializer.properties();
+        while (properties.hasNext()) {
+            PropertyWriter property = properties.next();
+            if (VALUE.equals(property.getName())) {
+                gen.writeFieldName(VALUE);
+                writeValue(data, index, keys, gen, provider);
+            } else {
+                try {
+                    property.serializeAsField(row, gen, provider);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Could not serialize property '" + property.getName() + "'.", e);
+                }
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeValue(RecordColumnarData data,
+                            int index,
+                            SerializableString[] keys,
+                            JsonGenerator gen,
+                            SerializerProvider provider)
+            throws IOException {
+        gen.writeStartObject();
+        for (int i = 0; i < keys.length; i++) {
+            gen.writeFieldName(keys[i]);
+            provider.defaultSerializeValue(data.getSchemaValue(index, i), gen);
+        }
+        gen.writeEndObject();
+    }
+
+}
@@ -55,11 +55,13 @@ public class RecordDataRepository
     @Override
     protected Data<RecordValue> assembleData(RecordDatasetEntity seriesEntity, DbQuery query, Session session)
             throws DataAccessException {
-        Data<RecordValue> result = new Data<RecordValue>();
-        DataDao<RecordDataEntity> dao = new DataDao<>(session);
+        DataDao<RecordDataEntity> dao = createDataDao(session);
         List<RecordDataEntity> observations = dao.getAllInstancesFor(seriesEntity, query);
+        if (isColumnarRepresentable(seriesEntity, query)) {
+            return assembleColumnarData(observations, seriesEntity, query);
+        }
+        Data<RecordValue> result = new Data<RecordValue>();
         for (RecordDataEntity observation : observations) {
-            // XXX n times same object?
             if (observation != null) {
                 result.addValues(createSeriesValueFor(observation, seriesEntity, query));
             }
@@ -67,6 +69,40 @@ public class RecordDataRepository
         return result;
     }
 
+    private boolean isColumnarRepresentable(RecordDatasetEntity dataset, DbQuery query) {
+        // no per-value metadata besides result time (see #addMetadatasIfNeeded)
+        return !query.isExpanded()
+                && !dataset.getPlatform()
+                           .isMobile();
+    }
+
+    private Data<RecordValue> assembleColumnarData(List<RecordDataEntity> observations,
+                                                   RecordDatasetEntity dataset,
+                                                   DbQuery query) {
+        ServiceEntity service = getServiceEntity(dataset);
+        boolean showTimeIntervals = query.getParameters()
+                                         .isShowTimeIntervals();
+        boolean showResultTime = query.isFieldSelected(DbQuery.FIELD_RESULT_TIME);
+        RecordColumnarData result = new RecordColumnarData(observations.size(), showTimeIntervals);
+        for (RecordDataEntity observation : observations) {
+            if (observation != null) {
+                Map<String, Object> value = !service.isNoDataValue(observation)
+                        ? observation.getValue()
+                        : null;
+                Date resultTime = observation.getResultTime();
+                result.addValue(observation.getTimestart()
+                                           .getTime(),
+                                observation.getTimeend()
+                                           .getTime(),
+                                value,
+                                showResultTime && resultTime != null
+                                        ? resultTime.getTime()
+                                        : null);
+            }
+        }
+        return result;
+    }
+
     @Override
     public RecordValue createSeriesValueFor(RecordDataEntity observation, RecordDatasetEntity series, DbQuery query) {
         if (observation == null) {
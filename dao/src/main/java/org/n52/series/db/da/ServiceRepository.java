@@ -29,6 +29,7 @@
 
 package org.n52.series.db.da;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -139,6 +140,12 @@ public class ServiceRepository extends ParameterRepository<ServiceEntity, Servic
                 : createDao(session).getAllInstances(parameters);
     }
 
+    @Override
+    protected List<ServiceEntity> getAllCondensedInstances(DbQuery parameters, Session session)
+            throws DataAccessException {
+        return getAllInstances(parameters, session);
+    }
+
     @Override
     protected ServiceEntity getEntity(Long id, AbstractDao<ServiceEntity> dao, DbQuery query)
             throws DataAccessException {
@@ -151,6 +158,17 @@ public class ServiceRepository extends ParameterRepository<ServiceEntity, Servic
         return result;
     }
 
+    @Override
+    protected List<ServiceEntity> getEntities(List<Long> ids, AbstractDao<ServiceEntity> dao, DbQuery query)
+            throws DataAccessException {
+        // the configured service instance is not stored in the database
+        List<ServiceEntity> results = new ArrayList<>();
+        for (Long id : ids) {
+            results.add(getEntity(id, dao, query));
+        }
+        return results;
+    }
+
     @Override
     protected ServiceOutput createExpanded(ServiceEntity entity, DbQuery query, Session session) {
         ServiceOutput result = getCondensedService(entity, query);
@@ -29,8 +29,10 @@
 
 package org.n52.series.db.da;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
@@ -40,11 +42,16 @@ import org.n52.series.db.DataAccessException;
 import org.n52.series.db.beans.ServiceEntity;
 import org.n52.series.db.beans.TextDataEntity;
 import org.n52.series.db.beans.TextDatasetEntity;
-import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.TextDataDao;
+import org.springframework.beans.factory.annotation.Autowired;
 
 public class TextDataRepository extends AbstractDataRepository<TextDatasetEntity, TextDataEntity, TextValue> {
 
+    // optional, text is searched in memory if not configured and no database support available
+    @Autowired(required = false)
+    private TextSearchIndex textSearchIndex;
+
     @Override
     public Class<TextDatasetEntity> getDatasetEntityType() {
         return TextDatasetEntity.class;
@@ -54,8 +61,9 @@ public class TextDataRepository extends AbstractDataRepository<TextDatasetEntity
     protected Data<TextValue> assembleData(TextDatasetEntity seriesEntity, DbQuery query, Session session)
             throws DataAccessException {
         Data<TextValue> result = new Data<>();
-        DataDao<TextDataEntity> dao = new DataDao<>(session);
-        List<TextDataEntity> observations = dao.getAllInstancesFor(seriesEntity, query);
+        List<TextDataEntity> observations = query.getTextSearch() != null
+                ? getMatchingObservations(seriesEntity, query, session)
+                : createDataDao(session).getAllInstancesFor(seriesEntity, query);
         for (TextDataEntity observation : observations) {
             if (observation != null) {
                 result.addValues(createSeriesValueFor(observation, seriesEntity, query));
@@ -64,6 +72,41 @@ public class TextDataRepository extends AbstractDataRepository<TextDatasetEntity
         return result;
     }
 
+    private List<TextDataEntity> getMatchingObservations(TextDatasetEntity seriesEntity,
+                                                         DbQuery query,
+                                                         Session session)
+            throws DataAccessException {
+        String searchText = query.getTextSearch();
+        TextDataDao textDao = new TextDataDao(session);
+        if (textDao.isFullTextSupported()) {
+            return textDao.getAllInstancesMatching(seriesEntity, query, searchText);
+        }
+        Set<Long> ids = textSearchIndex != null
+                ? textSearchIndex.search(seriesEntity.getPkid(), searchText)
+                : null;
+        List<TextDataEntity> candidates = ids != null
+                // observations indexed or added since, changed ones have to match by their current text
+                ? textDao.getAllInstancesFor(seriesEntity, query, ids, textSearchIndex.getLastIndexedId())
+                // no index available (yet)
+                : createDataDao(session).getAllInstancesFor(seriesEntity, query);
+        Set<String> words = TextSearchIndex.tokenize(searchText);
+        List<TextDataEntity> matches = new ArrayList<>();
+        for (TextDataEntity observation : candidates) {
+            if (observation != null && TextSearchIndex.containsAll(observation.getValue(), words)) {
+                matches.add(observation);
+            }
+        }
+        return matches;
+    }
+
+    public TextSearchIndex getTextSearchIndex() {
+        return textSearchIndex;
+    }
+
+    public void setTextSearchIndex(TextSearchIndex textSearchIndex) {
+        this.textSearchIndex = textSearchIndex;
+    }
+
     @Override
     public TextValue createSeriesValueFor(TextDataEntity observation, TextDatasetEntity series, DbQuery query) {
         ServiceEntity service = getServiceEntity(series);
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.hibernate.Session;
+import org.joda.time.Period;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.dao.DataChunkCache;
+import org.n52.series.db.dao.TextDataDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * In-memory inverted index over the words of text observations, used for full text search on databases not
+ * supporting it natively. The index is built and updated by a background job which periodically indexes
+ * observations added since the last run (observation ids are expected to increase). Observations added after
+ * the last run have to be checked by callers (see {@link #getLastIndexedId()}), as well as observations
+ * deleted or changed afterwards.
+ * <p>
+ * Datasets reported as changed by the {@link DataChunkCache} (see <code>dao/src/extension/data-cache</code>)
+ * are re-indexed, so changed observations are found by their new text. Without change tracking they are
+ * found by their text as of indexing until restart.
+ * <p>
+ * Words are the lower cased sequences of letters and digits. On PostgreSQL databases the job stops right
+ * away, as full text search is done by the database then.
+ * <p>
+ * Note that this tokenization is simpler than the one of PostgreSQL's <code>simple</code> text search
+ * configuration: hyphenated words, e-mail addresses, URLs and decimal numbers are split at every character
+ * which is neither a letter nor a digit, whereas PostgreSQL keeps them as (additional) single tokens. For
+ * example, <code>3.5</code> matches an observation containing <code>3 and 5</code> here, but not on
+ * PostgreSQL. The same <code>textSearch</code> may therefore return different observations depending on the
+ * database in use.
+ */
+public class TextSearchIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextSearchIndex.class);
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final String DEFAULT_INTERVAL = "PT10M";
+
+    private static final int BATCH_SIZE = 10000;
+
+    private final Map<Long, DatasetIndex> indexes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    private final long intervalInMillis;
+
+    private volatile long lastIndexedId = Long.MIN_VALUE;
+
+    private volatile boolean ready;
+
+    @Autowired
+    private HibernateSessionStore sessionStore;
+
+    @Autowired(required = false)
+    private DataChunkCache dataChunkCache;
+
+    public TextSearchIndex() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    /**
+     * @param interval
+     *        the update interval as ISO8601 period of fixed length, e.g. <code>PT10M</code>
+     */
+    public TextSearchIndex(String interval) {
+        this.intervalInMillis = Period.parse(interval)
+                                      .toStandardDuration()
+                                      .getMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "text-search-index");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::update, 0, intervalInMillis, TimeUnit.MILLISECONDS);
+        if (dataChunkCache != null) {
+            dataChunkCache.addChangeListener(datasetIds -> {
+                if (!executor.isShutdown()) {
+                    executor.execute(() -> reindex(datasetIds));
+                }
+            });
+        }
+    }
+
+    public void shutdown() {
+        LOGGER.info("Closing '{}'", getClass().getSimpleName());
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return <code>true</code> once all observations available at startup have been indexed
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the id of the last indexed observation, observations with greater ids are not indexed yet
+     */
+    public long getLastIndexedId() {
+        return lastIndexedId;
+    }
+
+    /**
+     * @param datasetId
+     *        the id of the text dataset.
+     * @param searchText
+     *        the words to search for.
+     * @return the ids of all observations of the dataset containing all words of the search text, or
+     *         <code>null</code> if the index is not ready yet.
+     */
+    public Set<Long> search(Long datasetId, String searchText) {
+        return ready
+                ? searchIndexed(datasetId, searchText)
+                : null;
+    }
+
+    Set<Long> searchIndexed(Long datasetId, String searchText) {
+        Set<String> words = tokenize(searchText);
+        DatasetIndex index = indexes.get(datasetId);
+        return index == null || words.isEmpty()
+                ? Collections.emptySet()
+                : index.search(words);
+    }
+
+    void update() {
+        Session session = sessionStore.getSession();
+        try {
+            TextDataDao dao = new TextDataDao(session);
+            if (dao.isFullTextSupported()) {
+                LOGGER.info("Database supports full text search. No in-memory text index needed.");
+                executor.shutdown();
+                return;
+            }
+            List<Object[]> entries;
+            int count = 0;
+            do {
+                entries = dao.getIndexEntries(lastIndexedId, BATCH_SIZE);
+                for (Object[] entry : entries) {
+                    add((Long) entry[0], (Long) entry[1], (String) entry[2]);
+                    lastIndexedId = (Long) entry[0];
+                }
+                count += entries.size();
+                session.clear();
+            } while (entries.size() == BATCH_SIZE);
+            ready = true;
+            LOGGER.debug("Indexed {} text observations.", count);
+        } catch (Exception e) {
+            LOGGER.warn("Could not update text search index.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    /**
+     * Rebuilds the index of the given datasets from the observations indexed so far.
+     *
+     * @param datasetIds
+     *        the ids of the changed datasets
+     */
+    void reindex(Collection<Long> datasetIds) {
+        if (executor.isShutdown()) {
+            // full text search is done by the database
+            return;
+        }
+        Session session = sessionStore.getSession();
+        try {
+            TextDataDao dao = new TextDataDao(session);
+            long untilId = lastIndexedId;
+            for (Long datasetId : datasetIds) {
+                List<Object[]> entries = new ArrayList<>();
+                List<Object[]> batch;
+                long afterId = Long.MIN_VALUE;
+                do {
+                    batch = dao.getIndexEntries(datasetId, afterId, untilId, BATCH_SIZE);
+                    entries.addAll(batch);
+                    if (!batch.isEmpty()) {
+                        afterId = (Long) batch.get(batch.size() - 1)[0];
+                    }
+                    session.clear();
+                } while (batch.size() == BATCH_SIZE);
+                replace(datasetId, entries);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not re-index text observations of datasets {}.", datasetIds, e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    /**
+     * Replaces the index of a dataset.
+     *
+     * @param datasetId
+     *        the id of the dataset
+     * @param entries
+     *        rows of observation id, dataset id and value, ordered by observation id
+     */
+    void replace(Long datasetId, List<Object[]> entries) {
+        DatasetIndex index = new DatasetIndex();
+        for (Object[] entry : entries) {
+            Set<String> words = tokenize((String) entry[2]);
+            if (!words.isEmpty()) {
+                index.add((Long) entry[0], words);
+            }
+        }
+        indexes.put(datasetId, index);
+    }
+
+    void add(Long observationId, Long datasetId, String text) {
+        Set<String> words = tokenize(text);
+        if (!words.isEmpty()) {
+            indexes.computeIfAbsent(datasetId, id -> new DatasetIndex())
+                   .add(observationId, words);
+        }
+    }
+
+    /**
+     * @param text
+     *        the text to split.
+     * @return the lower cased words of the given text.
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text != null) {
+            for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @param text
+     *        the text to check.
+     * @param words
+     *        the (tokenized) words to search for.
+     * @return <code>true</code> if the text contains all given words.
+     */
+    public static boolean containsAll(String text, Set<String> words) {
+        return !words.isEmpty() && tokenize(text).containsAll(words);
+    }
+
+    public void setSessionStore(HibernateSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    public void setDataChunkCache(DataChunkCache dataChunkCache) {
+        this.dataChunkCache = dataChunkCache;
+    }
+
+    private static final class DatasetIndex {
+
+        private final Map<String, Postings> postings = new HashMap<>();
+
+        synchronized void add(long observationId, Set<String> words) {
+            for (String word : words) {
+                postings.computeIfAbsent(word, w -> new Postings())
+                        .add(observationId);
+            }
+        }
+
+        synchronized Set<Long> search(Set<String> words) {
+            Postings shortest = null;
+            for (String word : words) {
+                Postings candidate = postings.get(word);
+                if (candidate == null) {
+                    return Collections.emptySet();
+                }
+                if (shortest == null || candidate.size < shortest.size) {
+                    shortest = candidate;
+                }
+            }
+            Set<Long> matches = new HashSet<>();
+            for (int i = 0; i < shortest.size; i++) {
+                long id = shortest.ids[i];
+                if (containedByAll(id, words)) {
+                    matches.add(id);
+                }
+            }
+            return matches;
+        }
+
+        private boolean containedByAll(long id, Set<String> words) {
+            for (String word : words) {
+                if (!postings.get(word)
+                             .contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Ascending observation ids of a word.
+     */
+    private static final class Postings {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+
+        private int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+
+}
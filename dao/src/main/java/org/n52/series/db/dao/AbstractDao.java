@@ -30,6 +30,8 @@
 package org.n52.series.db.dao;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -111,6 +113,24 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
         return getInstance(Long.toString(key), query, getEntityClass());
     }
 
+    /**
+     * Loads all instances having one of the given ids within a single query.
+     *
+     * @param keys
+     *        the ids of the instances
+     * @param query
+     *        the query instance
+     * @return the instances found, ids not matching the query are ignored
+     * @throws DataAccessException
+     *         if accessing the database fails
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> getInstances(Collection<Long> keys, DbQuery query) throws DataAccessException {
+        LOGGER.debug("get instances '{}': {}", keys, query);
+        return getDefaultCriteria(query).add(QueryUtils.createIdRestriction(DescribableEntity.PROPERTY_PKID, keys))
+                                        .list();
+    }
+
     protected T getInstance(String key, DbQuery query, Class<T> clazz) {
         LOGGER.debug("get instance for '{}'. {}", key, query);
         Criteria criteria = getDefaultCriteria(query, clazz);
@@ -124,6 +144,20 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
         return clazz.cast(instanceCriteria.uniqueResult());
     }
 
+    /**
+     * Retrieves all instances needed to create condensed outputs. By default full instances are loaded,
+     * subclasses may restrict loading to the identifying properties.
+     *
+     * @param query
+     *        the query instance
+     * @return all instances matching the given query
+     * @throws DataAccessException
+     *         if accessing the database fails
+     */
+    public List<T> getAllCondensedInstances(DbQuery query) throws DataAccessException {
+        return getAllInstances(query);
+    }
+
     @Override
     public Integer getCount(DbQuery query) throws DataAccessException {
         Criteria criteria = getDefaultCriteria(query).setProjection(Projections.rowCount());
@@ -136,7 +170,7 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
                 : criteria;
     }
 
-    private <I extends I18nEntity> boolean hasTranslation(DbQuery parameters, Class<I> clazz) {
+    protected <I extends I18nEntity> boolean hasTranslation(DbQuery parameters, Class<I> clazz) {
         Criteria i18nCriteria = session.createCriteria(clazz);
         return parameters.checkTranslationForLocale(i18nCriteria);
     }
@@ -159,13 +193,31 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
                 : getDefaultAlias();
         Criteria criteria = session.createCriteria(clazz, nonNullAlias);
         criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
-        addDatasetFilters(query, criteria);
-        addPlatformTypeFilter(getDatasetProperty(), criteria, query);
-        addValueTypeFilter(getDatasetProperty(), criteria, query);
+        Set<Long> indexedIds = getIndexedIds(query);
+        if (indexedIds != null) {
+            criteria.add(QueryUtils.createIdRestriction(DescribableEntity.PROPERTY_PKID, indexedIds));
+        } else {
+            addDatasetFilters(query, criteria);
+            addPlatformTypeFilter(getDatasetProperty(), criteria, query);
+            addValueTypeFilter(getDatasetProperty(), criteria, query);
+        }
         addGeometryTypeFilter(query, criteria);
         return criteria;
     }
 
+    /**
+     * @param query
+     *        the query instance
+     * @return the ids of entities referenced by published datasets matching the platform and value type
+     *         filters, or <code>null</code> if the filters have to be evaluated by the database
+     */
+    private Set<Long> getIndexedIds(DbQuery query) {
+        DatasetFilterIndex index = query.getDatasetFilterIndex();
+        return index != null
+                ? index.getMatchingIds(query, getDatasetProperty(), false)
+                : null;
+    }
+
     protected Criteria addDatasetFilters(DbQuery query, Criteria criteria) {
         DetachedCriteria filter = createDatasetSubqueryViaExplicitJoin(query);
         return criteria.add(Subqueries.propertyIn("pkid", filter));
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.series.db.DataAccessException;
+import org.n52.series.db.beans.CategoryDataEntity;
+import org.n52.series.db.beans.CategoryDatasetEntity;
+import org.n52.series.db.beans.DataEntity;
+
+/**
+ * Data access for category observations, additionally able to count category occurrences per time bucket.
+ */
+public class CategoryDataDao extends DataDao<CategoryDataEntity> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CategoryDataDao.class);
+
+    public CategoryDataDao(Session session) {
+        super(session, CategoryDataEntity.class);
+    }
+
+    /**
+     * Counts how often each category occurs per time bucket. Observations are assigned to buckets by their
+     * phenomenon time end. On PostgreSQL, grouping and counting is done by the database so that single
+     * observations are never transferred. On other databases observations are counted in memory (bucket
+     * boundaries in UTC then).
+     *
+     * @param dataset
+     *        the category dataset.
+     * @param query
+     *        the query to restrict the observations counted.
+     * @param bucket
+     *        the time bucket to count per.
+     * @return the number of occurrences by category (<code>null</code> for observations without value) by
+     *         bucket start, ordered by bucket start.
+     * @throws DataAccessException
+     *         if accessing database fails.
+     */
+    public SortedMap<Date, Map<String, Long>> getFrequencies(CategoryDatasetEntity dataset,
+                                                             DbQuery query,
+                                                             TimeBucket bucket)
+            throws DataAccessException {
+        LOGGER.debug("get {} frequencies for series '{}': {}", bucket, dataset.getPkid(), query);
+        return QueryUtils.isPostgreSQL(session)
+                ? countGrouped(dataset, query, bucket)
+                : countInMemory(dataset, query, bucket);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SortedMap<Date, Map<String, Long>> countGrouped(CategoryDatasetEntity dataset,
+                                                            DbQuery query,
+                                                            TimeBucket bucket) {
+        Criteria criteria = session.createCriteria(CategoryDataEntity.class)
+                                   .add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID, dataset.getPkid()))
+                                   .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE))
+                                   .add(Restrictions.eq(DataEntity.PROPERTY_PARENT, false));
+        query.addTimespanTo(criteria);
+        query.addSpatialFilter(criteria);
+        query.addResultTimeFilter(criteria);
+        query.addOdataFilterForData(criteria);
+        criteria.setProjection(Projections.projectionList()
+                                          .add(new TimeBucketProjection(DataEntity.PROPERTY_TIMEEND, bucket))
+                                          .add(Projections.groupProperty(DataEntity.PROPERTY_VALUE))
+                                          .add(Projections.rowCount()));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(toSQLString(criteria));
+        }
+
+        SortedMap<Date, Map<String, Long>> frequencies = new TreeMap<>();
+        for (Object[] row : (List<Object[]>) criteria.list()) {
+            Date bucketStart = new Date(((Date) row[0]).getTime());
+            addFrequency(frequencies, bucketStart, (String) row[1], ((Number) row[2]).longValue());
+        }
+        return frequencies;
+    }
+
+    private SortedMap<Date, Map<String, Long>> countInMemory(CategoryDatasetEntity dataset,
+                                                             DbQuery query,
+                                                             TimeBucket bucket)
+            throws DataAccessException {
+        SortedMap<Date, Map<String, Long>> frequencies = new TreeMap<>();
+        for (CategoryDataEntity observation : getAllInstancesFor(dataset, query)) {
+            DateTime timeend = new DateTime(observation.getTimeend(), DateTimeZone.UTC);
+            Date bucketStart = bucket.floor(timeend)
+                                     .toDate();
+            addFrequency(frequencies, bucketStart, observation.getValue(), 1L);
+        }
+        return frequencies;
+    }
+
+    private void addFrequency(SortedMap<Date, Map<String, Long>> frequencies,
+                              Date bucketStart,
+                              String category,
+                              long count) {
+        if (!frequencies.containsKey(bucketStart)) {
+            frequencies.put(bucketStart, new HashMap<>());
+        }
+        Map<String, Long> counts = frequencies.get(bucketStart);
+        Long current = counts.get(category);
+        counts.put(category, current != null
+                ? current + count
+                : count);
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Restrictions;
+import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.series.db.DataAccessException;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+
+/**
+ * A {@link DataDao} which splits requested timespans into aligned chunks held by a {@link DataChunkCache}.
+ * Only chunks missing in the cache are queried (adjacent missing chunks within a single query). The
+ * resulting chunks get stitched together and trimmed to the requested timespan afterwards.
+ *
+ * @param <T>
+ *        the data entity type
+ */
+@SuppressWarnings("rawtypes")
+public class ChunkedDataDao<T extends DataEntity> extends DataDao<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedDataDao.class);
+
+    private final DataChunkCache cache;
+
+    @SuppressWarnings("unchecked")
+    public ChunkedDataDao(Session session, DataChunkCache cache) {
+        this(session, (Class<T>) DataEntity.class, cache);
+    }
+
+    public ChunkedDataDao(Session session, Class<T> clazz, DataChunkCache cache) {
+        super(session, clazz);
+        this.cache = cache;
+    }
+
+    @Override
+    public List<T> getAllInstancesFor(DatasetEntity series, DbQuery query) throws DataAccessException {
+        if (!cache.isCacheable(query)) {
+            return super.getAllInstancesFor(series, query);
+        }
+
+        Long pkid = series.getPkid();
+        Interval timespan = query.getTimespan();
+        LOGGER.debug("get all instances for series '{}' via chunks: {}", pkid, query);
+
+        List<Long> chunkStarts = cache.getChunkStarts(timespan);
+        Map<Long, List<T>> chunks = new LinkedHashMap<>();
+        List<Long> missingChunks = new ArrayList<>();
+        for (Long chunkStart : chunkStarts) {
+            List<T> cachedChunk = cache.getChunk(pkid, getEntityClass(), chunkStart);
+            if (cachedChunk != null) {
+                loadChunks(missingChunks, series, query, chunks);
+                chunks.put(chunkStart, cachedChunk);
+            } else {
+                missingChunks.add(chunkStart);
+                chunks.put(chunkStart, null);
+            }
+        }
+        loadChunks(missingChunks, series, query, chunks);
+        return stitch(chunks.values(), timespan);
+    }
+
+    private void loadChunks(List<Long> missingChunks, DatasetEntity series, DbQuery query, Map<Long, List<T>> chunks) {
+        if (missingChunks.isEmpty()) {
+            return;
+        }
+        long firstChunk = missingChunks.get(0);
+        long lastChunk = missingChunks.get(missingChunks.size() - 1);
+        Interval interval = new Interval(firstChunk, lastChunk + cache.getChunkSize());
+        LOGGER.debug("load {} missing chunk(s) of series '{}': {}", missingChunks.size(), series.getPkid(), interval);
+        List<T> observations = getAllInstancesFor(series, query, interval);
+
+        List<Set<T>> loadedChunks = new ArrayList<>(missingChunks.size());
+        for (int i = 0; i < missingChunks.size(); i++) {
+            loadedChunks.add(new LinkedHashSet<>());
+        }
+        for (T observation : observations) {
+            addToChunks(observation.getTimestart(), observation, firstChunk, loadedChunks);
+            addToChunks(observation.getTimeend(), observation, firstChunk, loadedChunks);
+        }
+
+        for (int i = 0; i < missingChunks.size(); i++) {
+            Long chunkStart = missingChunks.get(i);
+            List<T> chunk = new ArrayList<>(loadedChunks.get(i));
+            cache.putChunk(series.getPkid(), getEntityClass(), chunkStart, chunk);
+            chunks.put(chunkStart, chunk);
+        }
+        missingChunks.clear();
+    }
+
+    private void addToChunks(Date time, T observation, long firstChunk, List<Set<T>> chunks) {
+        if (time == null) {
+            return;
+        }
+        long offset = time.getTime() - firstChunk;
+        int index = (int) Math.floorDiv(offset, cache.getChunkSize());
+        addToChunk(index, observation, chunks);
+        if (offset % cache.getChunkSize() == 0) {
+            // chunk bounds are inclusive
+            addToChunk(index - 1, observation, chunks);
+        }
+    }
+
+    private void addToChunk(int index, T observation, List<Set<T>> chunks) {
+        if (index >= 0 && index < chunks.size()) {
+            chunks.get(index)
+                  .add(observation);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> getAllInstancesFor(DatasetEntity series, DbQuery query, Interval interval) {
+        Criteria criteria = getDefaultCriteria(query).add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID,
+                                                                          series.getPkid()));
+        query.addTimespanTo(criteria, interval);
+        return criteria.list();
+    }
+
+    private List<T> stitch(Iterable<List<T>> chunks, Interval timespan) {
+        Map<Long, T> observations = new LinkedHashMap<>();
+        for (List<T> chunk : chunks) {
+            for (T observation : chunk) {
+                if (isWithin(observation, timespan)) {
+                    observations.putIfAbsent(observation.getPkid(), observation);
+                }
+            }
+        }
+        List<T> result = new ArrayList<>(observations.values());
+        result.sort(Comparator.comparing(T::getTimeend));
+        return result;
+    }
+
+    private boolean isWithin(T observation, Interval timespan) {
+        // same semantics as DbQuery#addTimespanTo (bounds inclusive)
+        return isWithin(observation.getTimestart(), timespan) || isWithin(observation.getTimeend(), timespan);
+    }
+
+    private boolean isWithin(Date time, Interval timespan) {
+        return time != null
+                && time.getTime() >= timespan.getStartMillis()
+                && time.getTime() <= timespan.getEndMillis();
+    }
+
+}
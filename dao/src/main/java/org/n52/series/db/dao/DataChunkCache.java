@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.dao;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.hibernate.exception.SQLGrammarException;
+import org.hibernate.type.StandardBasicTypes;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.HibernateSessionStore;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Holds observations of closed, fixed-size and epoch-aligned time chunks. As chunk boundaries do not depend
+ * on the requested timespan, slightly shifted windows (e.g. sliding <code>now-24h</code> dashboards) can be
+ * served from already loaded chunks so that only missing (or still open) chunks have to be queried from the
+ * database.
+ * <p>
+ * A chunk is considered closed (and therefore immutable) once its end lies further in the past than a closing
+ * grace period, so observations arriving with a delay are still included. Open chunks are never cached.
+ * <p>
+ * Observations inserted, corrected or deleted after their chunk has been closed are taken into account
+ * <ul>
+ * <li>via the <code>series_data_change</code> table (maintained by triggers, see
+ * <code>dao/src/extension/data-cache</code>) which is checked periodically, evicting all chunks of changed
+ * datasets,</li>
+ * <li>by {@link #evict(Long)} called by applications changing data,</li>
+ * <li>and finally by the time to live of cached chunks.</li>
+ * </ul>
+ * The cache size is bounded by the number of cached observations. Components keeping state derived from
+ * observations may register for tracked changes via {@link #addChangeListener(Consumer)}.
+ *
+ * @see ChunkedDataDao
+ */
+public class DataChunkCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataChunkCache.class);
+
+    private static final String DEFAULT_CHUNK_SIZE = "PT24H";
+
+    private static final long DEFAULT_MAXIMUM_OBSERVATIONS = 1000000;
+
+    private static final String DEFAULT_TIME_TO_LIVE = "PT1H";
+
+    private static final String DEFAULT_CLOSING_GRACE = "PT1H";
+
+    private static final String DEFAULT_CHANGE_INTERVAL = "PT1M";
+
+    private static final String CHANGE_TABLE = "series_data_change";
+
+    private static final String COLUMN_SERIES_ID = "seriesid";
+
+    private static final String COLUMN_CHANGED = "changed";
+
+    private final long chunkSize;
+
+    private final long closingGrace;
+
+    private final long changeIntervalInMillis;
+
+    private final Cache<ChunkKey, List< ? >> chunks;
+
+    private final ScheduledExecutorService executor;
+
+    private final List<Consumer<Set<Long>>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private Timestamp lastChange;
+
+    @Autowired(required = false)
+    private HibernateSessionStore sessionStore;
+
+    public DataChunkCache() {
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_MAXIMUM_OBSERVATIONS);
+    }
+
+    /**
+     * @param chunkSize
+     *        the chunk size as ISO8601 period of fixed length, e.g. <code>PT6H</code> or <code>P1D</code>
+     * @param maximumObservations
+     *        the maximum number of observations to keep
+     */
+    public DataChunkCache(String chunkSize, long maximumObservations) {
+        this(chunkSize, maximumObservations, DEFAULT_TIME_TO_LIVE, DEFAULT_CLOSING_GRACE, DEFAULT_CHANGE_INTERVAL);
+    }
+
+    /**
+     * @param chunkSize
+     *        the chunk size as ISO8601 period of fixed length, e.g. <code>PT6H</code> or <code>P1D</code>
+     * @param maximumObservations
+     *        the maximum number of observations to keep
+     * @param timeToLive
+     *        the time cached chunks expire after as ISO8601 period of fixed length
+     * @param closingGrace
+     *        the time after a chunk's end until it is considered closed as ISO8601 period of fixed length
+     * @param changeInterval
+     *        the interval to check for data changes as ISO8601 period of fixed length
+     */
+    public DataChunkCache(String chunkSize,
+                          long maximumObservations,
+                          String timeToLive,
+                          String closingGrace,
+                          String changeInterval) {
+        this.chunkSize = toMillis(chunkSize);
+        if (this.chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.closingGrace = toMillis(closingGrace);
+        this.changeIntervalInMillis = toMillis(changeInterval);
+        this.chunks = CacheBuilder.newBuilder()
+                                  .maximumWeight(maximumObservations)
+                                  .<ChunkKey, List< ? >> weigher((key, chunk) -> Math.max(1, chunk.size()))
+                                  .expireAfterWrite(toMillis(timeToLive), TimeUnit.MILLISECONDS)
+                                  .build();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-chunk-cache");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static long toMillis(String period) {
+        return Period.parse(period)
+                     .toStandardDuration()
+                     .getMillis();
+    }
+
+    public void start() {
+        if (sessionStore != null) {
+            executor.scheduleWithFixedDelay(this::checkForChanges,
+                                            0,
+                                            changeIntervalInMillis,
+                                            TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void shutdown() {
+        LOGGER.info("Closing '{}'", getClass().getSimpleName());
+        executor.shutdownNow();
+    }
+
+    /**
+     * Registers a listener notified with the ids of the datasets whose observations changed since the last
+     * check. Listeners are not notified if data changes can not be tracked.
+     *
+     * @param listener
+     *        the listener to notify
+     */
+    public void addChangeListener(Consumer<Set<Long>> listener) {
+        changeListeners.add(listener);
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the time in milliseconds after a chunk's end until it is considered closed
+     */
+    public long getClosingGrace() {
+        return closingGrace;
+    }
+
+    /**
+     * Checks if data matching the given query can be assembled from cached chunks. Chunks hold all
+     * (non-deleted) observations of a dataset, so any filter narrowing observations beyond the timespan
+     * prevents the use of the cache. Aggregations are computed by the database and bypass the cache, too.
+     * Expanded queries bypass the cache as cached observations do not hold their parameters. Queries selecting
+     * fields bypass the cache as they load partial observations.
+     *
+     * @param query
+     *        the query
+     * @return <code>true</code> if the query can be served via chunks
+     */
+    public boolean isCacheable(DbQuery query) {
+        IoParameters parameters = query.getParameters();
+        return parameters.getTimespan() != null
+                && !query.isComplexParent()
+                && !query.isExpanded()
+                && !query.isSetFieldSelection()
+                && query.getAggregation() == null
+                && !parameters.shallClassifyByResultTimes()
+                && parameters.getSpatialFilter() == null
+                && !parameters.getODataFilter()
+                              .isPresent();
+    }
+
+    /**
+     * @param timespan
+     *        the requested timespan
+     * @return the start times of all aligned chunks covering the given timespan
+     */
+    public List<Long> getChunkStarts(Interval timespan) {
+        List<Long> chunkStarts = new ArrayList<>();
+        long end = timespan.getEndMillis();
+        for (long start = alignToChunk(timespan.getStartMillis()); start <= end; start += chunkSize) {
+            chunkStarts.add(start);
+        }
+        return chunkStarts;
+    }
+
+    public long alignToChunk(long timestamp) {
+        return Math.floorDiv(timestamp, chunkSize) * chunkSize;
+    }
+
+    public Interval getChunkInterval(long chunkStart) {
+        return new Interval(chunkStart, chunkStart + chunkSize);
+    }
+
+    /**
+     * @param chunkStart
+     *        the chunk's start time
+     * @return <code>true</code> if no further observations are expected to fall into that chunk
+     */
+    public boolean isClosed(long chunkStart) {
+        return chunkStart + chunkSize + closingGrace < System.currentTimeMillis();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getChunk(Long datasetId, Class< ? > entityType, long chunkStart) {
+        return (List<T>) chunks.getIfPresent(new ChunkKey(datasetId, entityType, chunkStart));
+    }
+
+    public void putChunk(Long datasetId, Class< ? > entityType, long chunkStart, List< ? > data) {
+        if (isClosed(chunkStart)) {
+            List< ? > immutableData = Collections.unmodifiableList(new ArrayList<>(data));
+            chunks.put(new ChunkKey(datasetId, entityType, chunkStart), immutableData);
+        }
+    }
+
+    /**
+     * Evicts all chunks of the given dataset, e.g. after past observations have been inserted, updated or
+     * deleted.
+     *
+     * @param datasetId
+     *        the dataset id
+     */
+    public void evict(Long datasetId) {
+        LOGGER.debug("evict data chunks of dataset '{}'", datasetId);
+        chunks.asMap()
+              .keySet()
+              .removeIf(key -> key.datasetId.equals(datasetId));
+    }
+
+    public void evictAll() {
+        chunks.invalidateAll();
+    }
+
+    /**
+     * Evicts the chunks of datasets recorded as changed since the last check.
+     */
+    @SuppressWarnings("unchecked")
+    void checkForChanges() {
+        Session session = sessionStore.getSession();
+        try {
+            SQLQuery query = session.createSQLQuery("select " + COLUMN_SERIES_ID + ", " + COLUMN_CHANGED
+                    + " from " + CHANGE_TABLE + " where " + COLUMN_CHANGED + " > :lastChange");
+            query.setTimestamp("lastChange", lastChange != null
+                    ? lastChange
+                    : new Timestamp(0));
+            query.addScalar(COLUMN_SERIES_ID, StandardBasicTypes.LONG)
+                 .addScalar(COLUMN_CHANGED, StandardBasicTypes.TIMESTAMP);
+            boolean initial = lastChange == null;
+            Set<Long> changedDatasets = new HashSet<>();
+            for (Object[] change : (List<Object[]>) query.list()) {
+                Timestamp changed = (Timestamp) change[1];
+                if (lastChange == null || changed.after(lastChange)) {
+                    lastChange = changed;
+                }
+                if (!initial) {
+                    evict((Long) change[0]);
+                    changedDatasets.add((Long) change[0]);
+                }
+            }
+            if (!changedDatasets.isEmpty()) {
+                changeListeners.forEach(listener -> listener.accept(changedDatasets));
+            }
+            if (lastChange == null) {
+                // no changes recorded yet
+                lastChange = new Timestamp(0);
+            }
+        } catch (SQLGrammarException e) {
+            LOGGER.info("Data changes can not be tracked (see 'dao/src/extension/data-cache'), "
+                    + "cached data chunks expire by time to live only.");
+            LOGGER.debug("Could not read table '{}'.", CHANGE_TABLE, e);
+            executor.shutdown();
+        } catch (Exception e) {
+            LOGGER.warn("Could not check for data changes, retrying.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    public void setSessionStore(HibernateSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    private static final class ChunkKey {
+
+        private final Long datasetId;
+
+        private final Class< ? > entityType;
+
+        private final long chunkStart;
+
+        private ChunkKey(Long datasetId, Class< ? > entityType, long chunkStart) {
+            this.datasetId = datasetId;
+            this.entityType = entityType;
+            this.chunkStart = chunkStart;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(datasetId, entityType, chunkStart);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey other = (ChunkKey) obj;
+            return chunkStart == other.chunkStart
+                    && Objects.equals(datasetId, other.datasetId)
+                    && Objects.equals(entityType, other.entityType);
+        }
+
+    }
+
+}
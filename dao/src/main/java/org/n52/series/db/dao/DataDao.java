@@ -29,17 +29,29 @@
 
 package org.n52.series.db.dao;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.SimpleExpression;
 import org.hibernate.criterion.Subqueries;
+import org.hibernate.transform.Transformers;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,9 +59,14 @@ import org.springframework.transaction.annotation.Transactional;
 
 import org.n52.io.request.IoParameters;
 import org.n52.series.db.DataAccessException;
+import org.n52.series.db.beans.CategoryDataEntity;
+import org.n52.series.db.beans.CountDataEntity;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.GeometryEntity;
+import org.n52.series.db.beans.PlatformEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.series.db.beans.TextDataEntity;
 
 /**
  * TODO: JavaDoc
@@ -64,6 +81,24 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DataDao.class);
 
+    private static final String PROPERTY_VALID_TIME_START = "validTimeStart";
+
+    private static final String PROPERTY_VALID_TIME_END = "validTimeEnd";
+
+    // value types with a single value column which can be loaded partially
+    private static final Map<String, Class< ? extends DataEntity>> PROJECTABLE_TYPES;
+
+    static {
+        Map<String, Class< ? extends DataEntity>> types = new HashMap<>();
+        types.put("quantity", QuantityDataEntity.class);
+        types.put("count", CountDataEntity.class);
+        types.put("text", TextDataEntity.class);
+        types.put("category", CategoryDataEntity.class);
+        PROJECTABLE_TYPES = Collections.unmodifiableMap(types);
+    }
+
+    private static final int SCROLL_FETCH_SIZE = 1000;
+
     private final Class<T> entityType;
 
     @SuppressWarnings("unchecked")
@@ -119,11 +154,88 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
         final Long pkid = series.getPkid();
         LOGGER.debug("get all instances for series '{}': {}", pkid, query);
         final SimpleExpression equalsPkid = Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID, pkid);
-        Criteria criteria = getDefaultCriteria(query).add(equalsPkid);
+        Criteria criteria;
+        if (isPartiallyLoadable(series, query)) {
+            // value columns are mapped per subclass, so the projection has to be rooted at the concrete type
+            Class< ? extends DataEntity> projectedType = PROJECTABLE_TYPES.get(series.getValueType());
+            criteria = getDefaultCriteria(query, projectedType).add(equalsPkid);
+            addFieldProjection(criteria, projectedType, series, query);
+        } else {
+            criteria = getDefaultCriteria(query).add(equalsPkid);
+        }
         query.addTimespanTo(criteria);
         return criteria.list();
     }
 
+    /**
+     * Scrolls the observations of a series ordered by their end time, so they can be processed one by one
+     * instead of loading all of them at once. Parameters are not fetched. The caller has to close the
+     * results.
+     *
+     * @param series
+     *        the series the observations belongs to.
+     * @param query
+     *        some query parameters to restrict result.
+     * @return the scrollable observations, a single observation entity per row
+     */
+    public ScrollableResults scrollAllInstancesFor(DatasetEntity series, DbQuery query) {
+        LOGGER.debug("scroll all instances for series '{}': {}", series.getPkid(), query);
+        Criteria criteria = getDefaultCriteria(query).add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID,
+                                                                          series.getPkid()))
+                                                     .setFetchMode(DataEntity.PROPERTY_PARAMETERS, FetchMode.SELECT)
+                                                     .setResultTransformer(Criteria.ROOT_ENTITY)
+                                                     .setFetchSize(SCROLL_FETCH_SIZE);
+        query.addTimespanTo(criteria);
+        return criteria.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    /**
+     * Checks if only the columns needed for the fields selected via {@link DbQuery#isFieldSelected(String)}
+     * can be loaded. Parameters are an association which can not be projected, so expanded queries selecting
+     * parameters load complete observations.
+     */
+    private boolean isPartiallyLoadable(DatasetEntity series, DbQuery query) {
+        return query.isSetFieldSelection()
+                && PROJECTABLE_TYPES.containsKey(series.getValueType())
+                && !isParametersEmitted(query);
+    }
+
+    /**
+     * Restricts the loaded columns to those of fields which will be output. Observations are returned as
+     * detached entities holding the loaded properties only.
+     */
+    private void addFieldProjection(Criteria criteria,
+                                    Class< ? extends DataEntity> projectedType,
+                                    DatasetEntity series,
+                                    DbQuery query) {
+        ProjectionList projections = Projections.projectionList();
+        addPropertyProjection(projections, DataEntity.PROPERTY_PKID);
+        addPropertyProjection(projections, DataEntity.PROPERTY_SERIES_PKID);
+        addPropertyProjection(projections, DataEntity.PROPERTY_TIMESTART);
+        addPropertyProjection(projections, DataEntity.PROPERTY_TIMEEND);
+        addPropertyProjection(projections, DataEntity.PROPERTY_VALUE);
+        if (query.isFieldSelected(DbQuery.FIELD_RESULT_TIME)) {
+            addPropertyProjection(projections, DataEntity.PROPERTY_RESULTTIME);
+        }
+        if (query.isExpanded() && query.isFieldSelected(DbQuery.FIELD_VALID_TIME)) {
+            addPropertyProjection(projections, PROPERTY_VALID_TIME_START);
+            addPropertyProjection(projections, PROPERTY_VALID_TIME_END);
+        }
+        PlatformEntity platform = series.getPlatform();
+        boolean geometryOutput = query.isExpanded()
+                || platform != null && platform.isMobile();
+        if (geometryOutput && query.isFieldSelected(DbQuery.FIELD_GEOMETRY)) {
+            // skips the samplingGeometry column otherwise
+            addPropertyProjection(projections, DataEntity.PROPERTY_GEOMETRY_ENTITY);
+        }
+        criteria.setProjection(projections);
+        criteria.setResultTransformer(Transformers.aliasToBean(projectedType));
+    }
+
+    private void addPropertyProjection(ProjectionList projections, String property) {
+        projections.add(Projections.property(property), property);
+    }
+
     @Override
     protected Class<T> getEntityClass() {
         return entityType;
@@ -137,11 +249,19 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
 
     @Override
     public Criteria getDefaultCriteria(DbQuery query) {
-        Criteria criteria = session.createCriteria(entityType)
+        return getDefaultCriteria(query, entityType);
+    }
+
+    private Criteria getDefaultCriteria(DbQuery query, Class< ? > clazz) {
+        Criteria criteria = session.createCriteria(clazz)
                                    // TODO check ordering when `showtimeintervals=true`
                                    .addOrder(Order.asc(DataEntity.PROPERTY_TIMEEND))
                                    .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE));
         criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        if (!isParametersEmitted(query)) {
+            // joining parameters which are not output would multiply result rows
+            criteria.setFetchMode(DataEntity.PROPERTY_PARAMETERS, FetchMode.SELECT);
+        }
 
         query.addSpatialFilter(criteria);
         query.addResultTimeFilter(criteria);
@@ -154,6 +274,14 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
         return criteria;
     }
 
+    /**
+     * Parameters are output on expanded queries only, and only if not excluded via field selection.
+     */
+    private boolean isParametersEmitted(DbQuery query) {
+        return query.isExpanded()
+                && query.isFieldSelected(DbQuery.FIELD_PARAMETERS);
+    }
+
     @SuppressWarnings("unchecked")
     public T getDataValueViaTimeend(DatasetEntity series, DbQuery query) {
         Date timeend = series.getLastValueAt();
@@ -175,12 +303,113 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
         return (GeometryEntity) criteria.uniqueResult();
     }
 
+    /**
+     * Retrieves the first values of all given datasets within a single query.
+     *
+     * @param datasets
+     *        the datasets
+     * @param query
+     *        the query instance
+     * @return the first values mapped by dataset id. Datasets without values are not contained.
+     */
+    public Map<Long, T> getDataValuesViaTimestart(Collection< ? extends DatasetEntity> datasets, DbQuery query) {
+        return getDataValuesAt(DataEntity.PROPERTY_TIMESTART, DatasetEntity.PROPERTY_FIRST_VALUE_AT, datasets, query);
+    }
+
+    /**
+     * Retrieves the last values of all given datasets within a single query.
+     *
+     * @param datasets
+     *        the datasets
+     * @param query
+     *        the query instance
+     * @return the last values mapped by dataset id. Datasets without values are not contained.
+     */
+    public Map<Long, T> getDataValuesViaTimeend(Collection< ? extends DatasetEntity> datasets, DbQuery query) {
+        return getDataValuesAt(DataEntity.PROPERTY_TIMEEND, DatasetEntity.PROPERTY_LAST_VALUE_AT, datasets, query);
+    }
+
+    /**
+     * Retrieves the geometries of the last values of all given datasets within a single query.
+     *
+     * @param datasets
+     *        the datasets
+     * @param query
+     *        the query instance
+     * @return the last value geometries mapped by dataset id. Datasets without values are not contained.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, GeometryEntity> getValueGeometriesViaTimeend(Collection< ? extends DatasetEntity> datasets,
+                                                                  DbQuery query) {
+        Map<Long, GeometryEntity> geometries = new HashMap<>();
+        if (datasets.isEmpty()) {
+            return geometries;
+        }
+        Criteria criteria = createDataAtCriteria(DataEntity.PROPERTY_TIMEEND,
+                                                 DatasetEntity.PROPERTY_LAST_VALUE_AT,
+                                                 datasets,
+                                                 query);
+        criteria.setProjection(Projections.projectionList()
+                                          .add(Projections.property(DataEntity.PROPERTY_SERIES_PKID))
+                                          .add(Projections.property(DataEntity.PROPERTY_GEOMETRY_ENTITY)));
+        for (Object[] row : (List<Object[]>) criteria.list()) {
+            geometries.putIfAbsent((Long) row[0], (GeometryEntity) row[1]);
+        }
+        return geometries;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, T> getDataValuesAt(String column,
+                                         String datasetColumn,
+                                         Collection< ? extends DatasetEntity> datasets,
+                                         DbQuery query) {
+        Map<Long, T> values = new HashMap<>();
+        if (datasets.isEmpty()) {
+            return values;
+        }
+        Criteria criteria = createDataAtCriteria(column, datasetColumn, datasets, query);
+        for (T value : (List<T>) criteria.list()) {
+            // keeps a single value per dataset like the per dataset lookup does
+            values.putIfAbsent(value.getSeriesPkid(), value);
+        }
+        return values;
+    }
+
+    private Criteria createDataAtCriteria(String column,
+                                          String datasetColumn,
+                                          Collection< ? extends DatasetEntity> datasets,
+                                          DbQuery query) {
+        Set<Long> ids = datasets.stream()
+                                .map(DatasetEntity::getPkid)
+                                .collect(Collectors.toSet());
+        LOGGER.debug("get data @{} for {} datasets", datasetColumn, ids.size());
+        ProjectionList datasetTimes = Projections.projectionList()
+                                                 .add(Projections.property(DatasetEntity.PROPERTY_PKID))
+                                                 .add(Projections.property(datasetColumn));
+        DetachedCriteria valuesAt = DetachedCriteria.forClass(DatasetEntity.class)
+                                                    .add(QueryUtils.createIdRestriction(DatasetEntity.PROPERTY_PKID,
+                                                                                        ids))
+                                                    .setProjection(datasetTimes);
+        Criteria criteria = getDefaultCriteria(query).add(Subqueries.propertiesIn(new String[] {
+            DataEntity.PROPERTY_SERIES_PKID,
+            column
+        }, valuesAt));
+        Criterion datasetRestriction = QueryUtils.createIdRestriction(DataEntity.PROPERTY_SERIES_PKID, ids);
+        return addResultTimeRestriction(criteria, column, datasetRestriction, query);
+    }
+
     private Criteria createDataAtCriteria(Date timestamp, String column, DatasetEntity dataset, DbQuery query) {
         LOGGER.debug("get data @{} for '{}'", new DateTime(timestamp.getTime()), dataset.getPkid());
+        SimpleExpression datasetRestriction = Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID, dataset.getPkid());
         Criteria criteria = getDefaultCriteria(query).add(Restrictions.eq(column, timestamp))
-                                                     .add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID,
-                                                                          dataset.getPkid()));
+                                                     .add(datasetRestriction);
+        return addResultTimeRestriction(criteria, column, datasetRestriction, query);
+    }
 
+    private Criteria addResultTimeRestriction(Criteria criteria,
+                                              String column,
+                                              Criterion datasetRestriction,
+                                              DbQuery query) {
         IoParameters parameters = query.getParameters();
         if (parameters.isAllResultTimes()) {
             // no filter needed
@@ -196,7 +425,7 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
             String rtDatasetId = QueryUtils.createAssociation(rtAlias, DataEntity.PROPERTY_SERIES_PKID);
             String rtResultTime = QueryUtils.createAssociation(rtAlias, DataEntity.PROPERTY_RESULTTIME);
             DetachedCriteria maxResultTimeQuery = DetachedCriteria.forClass(getEntityClass(), rtAlias);
-            maxResultTimeQuery.add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID, dataset.getPkid()))
+            maxResultTimeQuery.add(datasetRestriction)
                               .setProjection(Projections.projectionList()
                                                         .add(Projections.groupProperty(rtColumn))
                                                         .add(Projections.groupProperty(rtDatasetId))
@@ -30,6 +30,7 @@
 package org.n52.series.db.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.hibernate.Criteria;
@@ -126,6 +127,14 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
                            .uniqueResult();
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> getInstances(Collection<Long> keys, DbQuery query) throws DataAccessException {
+        Criteria criteria = getDefaultCriteria(getDefaultAlias(), false, query);
+        return criteria.add(QueryUtils.createIdRestriction(COLUMN_PKID, keys))
+                       .list();
+    }
+
     @Override
     protected T getInstance(String key, DbQuery query, Class<T> clazz) {
         return super.getInstance(key, query, clazz, getDefaultCriteria(null, false, query, clazz));
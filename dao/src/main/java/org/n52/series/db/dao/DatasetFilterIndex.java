@@ -0,0 +1,548 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.PropertyProjection;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.sql.JoinType;
+import org.joda.time.Period;
+import org.n52.io.request.FilterResolver;
+import org.n52.io.request.IoParameters;
+import org.n52.io.response.PlatformType;
+import org.n52.io.response.dataset.ValueType;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.MetadataCacheEvictor;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.PlatformEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * In-memory index of published datasets to evaluate dataset filters (see
+ * {@link DbQuery#addDetachedFilters(String, Criteria)}, platform and value type filters) without database
+ * subqueries. Each dataset gets an ordinal, each filter value a bitset of the datasets it matches, so
+ * evaluating a filter is a bitset intersection.
+ * <p>
+ * In contrast to the subqueries, all filters are evaluated on the same dataset, i.e. an entity matches if
+ * a single published dataset referencing it matches all filters.
+ * <p>
+ * Procedure and offering hierarchies are kept as ancestor/descendant closure, so filtering by a parent
+ * matches the datasets of all its descendants at any depth (see {@link #getSelfAndDescendantIds(String,
+ * Collection)}). Cyclic hierarchies are resolved to the entities reachable. Without the index, hierarchical
+ * filters match direct children only.
+ * <p>
+ * The index is rebuilt periodically and on changes tracked by the {@link MetadataCacheEvictor}. It is
+ * consulted only if a query sets a filter, and only if the filter matches at most a maximum number of ids,
+ * which are passed as bind parameters. Queries matching domain ids or filtering spatially are not supported.
+ * All other queries are evaluated by the database.
+ */
+public class DatasetFilterIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetFilterIndex.class);
+
+    private static final String PROPERTY_PARENTS = "parents";
+
+    private static final String PROCEDURE_ALIAS = "indexedProcedure";
+
+    private static final String PARENT_ALIAS = "indexedParent";
+
+    private final ScheduledExecutorService executor;
+
+    private static final int DEFAULT_MAXIMUM_IDS = 1000;
+
+    private final long intervalInMillis;
+
+    private final int maximumIds;
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    private HibernateSessionStore sessionStore;
+
+    @Autowired(required = false)
+    private MetadataCacheEvictor metadataCacheEvictor;
+
+    /**
+     * @param interval
+     *        the rebuild interval as ISO8601 period of fixed length
+     */
+    public DatasetFilterIndex(String interval) {
+        this(interval, DEFAULT_MAXIMUM_IDS);
+    }
+
+    /**
+     * @param interval
+     *        the rebuild interval as ISO8601 period of fixed length
+     * @param maximumIds
+     *        the maximum number of matching ids to restrict queries with
+     */
+    public DatasetFilterIndex(String interval, int maximumIds) {
+        this.intervalInMillis = Period.parse(interval)
+                                      .toStandardDuration()
+                                      .getMillis();
+        this.maximumIds = maximumIds;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dataset-filter-index");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::refresh, 0, intervalInMillis, TimeUnit.MILLISECONDS);
+        if (metadataCacheEvictor != null) {
+            metadataCacheEvictor.addChangeListener(tables -> executor.execute(this::refresh));
+        }
+    }
+
+    public void shutdown() {
+        LOGGER.info("Closing '{}'", getClass().getSimpleName());
+        executor.shutdownNow();
+    }
+
+    /**
+     * Rebuilds the index from the database.
+     */
+    public void refresh() {
+        Session session = sessionStore.getSession();
+        try {
+            long start = System.currentTimeMillis();
+            update(getDatasets(session),
+                   getParents(session, ProcedureEntity.class),
+                   getParents(session, OfferingEntity.class));
+            LOGGER.debug("indexed {} datasets in {}ms", snapshot.size, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            LOGGER.warn("Could not build dataset filter index.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the index has been built
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Evaluates the dataset filters of the given query.
+     *
+     * @param query
+     *        the query containing the filters
+     * @param datasetProperty
+     *        the dataset property referencing the entities to return the ids of
+     * @param detachedFilters
+     *        whether to apply the filters of {@link DbQuery#addDetachedFilters(String, Criteria)}, too
+     * @return the ids of the entities referenced by published datasets matching the filters, or
+     *         <code>null</code> if the query sets no filter, matches too many ids, or can not be evaluated by
+     *         the index
+     */
+    public Set<Long> getMatchingIds(DbQuery query, String datasetProperty, boolean detachedFilters) {
+        Snapshot current = snapshot;
+        if (current == null
+                || query.isMatchDomainIds()
+                || query.getSpatialFilter() != null
+                || !current.columns.containsKey(datasetProperty)) {
+            return null;
+        }
+        BitSet matches = new BitSet(current.size);
+        matches.set(0, current.size);
+        boolean filtered = false;
+        IoParameters parameters = query.getParameters();
+        FilterResolver filterResolver = parameters.getFilterResolver();
+        if (!filterResolver.shallIncludeAllPlatformTypes()) {
+            matches.and(current.getPlatformTypeMatches(filterResolver));
+            filtered = true;
+        }
+        Set<String> valueTypes = parameters.getValueTypes();
+        if (!valueTypes.isEmpty()
+                && (parameters.shallBehaveBackwardsCompatible() || !filterResolver.shallIncludeAllDatasetTypes())) {
+            matches.and(current.union(current.valueTypes, valueTypes));
+            filtered = true;
+        }
+        if (detachedFilters) {
+            filtered |= applyDetachedFilters(current, parameters, matches);
+        }
+        if (!filtered) {
+            // no restriction to gain, keep the subquery
+            return null;
+        }
+
+        long[] column = current.columns.get(datasetProperty);
+        Set<Long> ids = new HashSet<>();
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            ids.add(column[ordinal]);
+            if (ids.size() > maximumIds) {
+                // too many bind parameters, keep the subquery
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Resolves the hierarchy closure of the given procedures or offerings.
+     *
+     * @param datasetProperty
+     *        the dataset property referencing the hierarchical entities
+     * @param ids
+     *        the ids of the ancestor entities
+     * @return the given ids and the ids of all their descendants, or <code>null</code> if the closure of
+     *         the given property is not available
+     */
+    public Set<Long> getSelfAndDescendantIds(String datasetProperty, Collection<Long> ids) {
+        Snapshot current = snapshot;
+        Map<Long, Set<Long>> closure = current != null
+                ? current.descendants.get(datasetProperty)
+                : null;
+        if (closure == null) {
+            return null;
+        }
+        Set<Long> result = new HashSet<>(ids);
+        for (Long id : ids) {
+            result.addAll(closure.getOrDefault(id, Collections.emptySet()));
+        }
+        return result;
+    }
+
+    private boolean applyDetachedFilters(Snapshot current, IoParameters parameters, BitSet matches) {
+        Set<String> procedures = new HashSet<>(parameters.getProcedures());
+        Set<String> features = new HashSet<>(parameters.getFeatures());
+        for (String platform : parameters.getPlatforms()) {
+            if (PlatformType.isStationaryId(platform)) {
+                features.add(PlatformType.extractId(platform));
+            } else if (PlatformType.isMobileId(platform)) {
+                procedures.add(PlatformType.extractId(platform));
+            }
+        }
+        Set<String> datasets = new HashSet<>(parameters.getSeries());
+        for (String dataset : parameters.getDatasets()) {
+            datasets.add(ValueType.extractId(dataset));
+        }
+
+        boolean filtered = filter(matches, current, DatasetEntity.PROPERTY_PHENOMENON, parameters.getPhenomena());
+        filtered |= filter(matches, current, DatasetEntity.PROPERTY_PROCEDURE, procedures);
+        filtered |= filter(matches, current, DatasetEntity.PROPERTY_OFFERING, parameters.getOfferings());
+        filtered |= filter(matches, current, DatasetEntity.PROPERTY_FEATURE, features);
+        filtered |= filter(matches, current, DatasetEntity.PROPERTY_CATEGORY, parameters.getCategories());
+        if (!datasets.isEmpty()) {
+            BitSet datasetMatches = new BitSet(current.size);
+            for (Long id : QueryUtils.parseToIds(datasets)) {
+                Integer ordinal = current.ordinals.get(id);
+                if (ordinal != null) {
+                    datasetMatches.set(ordinal);
+                }
+            }
+            matches.and(datasetMatches);
+            filtered = true;
+        }
+        return filtered;
+    }
+
+    private boolean filter(BitSet matches, Snapshot current, String property, Set<String> values) {
+        if (values == null || values.isEmpty()) {
+            return false;
+        }
+        Set<Long> ids = QueryUtils.parseToIds(values);
+        BitSet propertyMatches = current.union(current.bitsets.get(property), ids);
+        Map<Long, BitSet> children = current.parentBitsets.get(property);
+        if (children != null) {
+            // hierarchical filter, datasets of descendant entities match, too
+            propertyMatches.or(current.union(children, ids));
+        }
+        matches.and(propertyMatches);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> getDatasets(Session session) {
+        ProjectionList projections = Projections.projectionList()
+                                                .add(Projections.id())
+                                                .add(property(PROCEDURE_ALIAS, DescribableEntity.PROPERTY_PKID))
+                                                .add(pkidOf(DatasetEntity.PROPERTY_PHENOMENON))
+                                                .add(pkidOf(DatasetEntity.PROPERTY_OFFERING))
+                                                .add(pkidOf(DatasetEntity.PROPERTY_FEATURE))
+                                                .add(pkidOf(DatasetEntity.PROPERTY_CATEGORY))
+                                                .add(Projections.property(DatasetEntity.PROPERTY_VALUE_TYPE))
+                                                .add(property(PROCEDURE_ALIAS, PlatformEntity.PROPERTY_MOBILE))
+                                                .add(property(PROCEDURE_ALIAS, PlatformEntity.PROPERTY_INSITU));
+        Criteria criteria = session.createCriteria(DatasetEntity.class)
+                                   .createAlias(DatasetEntity.PROPERTY_PROCEDURE, PROCEDURE_ALIAS)
+                                   .add(Restrictions.eq(DatasetEntity.PROPERTY_PUBLISHED, true))
+                                   .add(Restrictions.eq(DatasetEntity.PROPERTY_DELETED, false))
+                                   .add(Restrictions.isNotNull(DatasetEntity.PROPERTY_FIRST_VALUE_AT))
+                                   .add(Restrictions.isNotNull(DatasetEntity.PROPERTY_LAST_VALUE_AT))
+                                   .setProjection(projections);
+        return criteria.list();
+    }
+
+    /**
+     * Replaces the index by one built from the given dataset rows and hierarchies.
+     *
+     * @param rows
+     *        the published datasets, each row containing the dataset id, the procedure, phenomenon, offering,
+     *        feature and category ids, the value type, and the mobile and insitu flags of the procedure
+     * @param procedureParents
+     *        the parent ids per procedure id
+     * @param offeringParents
+     *        the parent ids per offering id
+     */
+    void update(List<Object[]> rows,
+                Map<Long, Set<Long>> procedureParents,
+                Map<Long, Set<Long>> offeringParents) {
+        Snapshot result = new Snapshot(rows.size());
+        long[] procedures = result.addColumn(DatasetEntity.PROPERTY_PROCEDURE);
+        long[] phenomena = result.addColumn(DatasetEntity.PROPERTY_PHENOMENON);
+        long[] offerings = result.addColumn(DatasetEntity.PROPERTY_OFFERING);
+        long[] features = result.addColumn(DatasetEntity.PROPERTY_FEATURE);
+        long[] categories = result.addColumn(DatasetEntity.PROPERTY_CATEGORY);
+        for (int ordinal = 0; ordinal < rows.size(); ordinal++) {
+            Object[] row = rows.get(ordinal);
+            result.ordinals.put((Long) row[0], ordinal);
+            procedures[ordinal] = toId(row[1]);
+            phenomena[ordinal] = toId(row[2]);
+            offerings[ordinal] = toId(row[3]);
+            features[ordinal] = toId(row[4]);
+            categories[ordinal] = toId(row[5]);
+            result.add(result.valueTypes, (String) row[6], ordinal);
+            if (row[7] != null) {
+                (Boolean.TRUE.equals(row[7])
+                        ? result.mobile
+                        : result.stationary).set(ordinal);
+            }
+            if (row[8] != null) {
+                (Boolean.TRUE.equals(row[8])
+                        ? result.insitu
+                        : result.remote).set(ordinal);
+            }
+        }
+        // platforms are procedures
+        result.columns.put(DatasetEntity.PROPERTY_PLATFORM, procedures);
+        result.indexColumns();
+        result.addParents(DatasetEntity.PROPERTY_PROCEDURE, procedureParents);
+        result.addParents(DatasetEntity.PROPERTY_OFFERING, offeringParents);
+        snapshot = result;
+    }
+
+    private static PropertyProjection property(String alias, String property) {
+        return Projections.property(QueryUtils.createAssociation(alias, property));
+    }
+
+    private static PropertyProjection pkidOf(String association) {
+        return property(association, DescribableEntity.PROPERTY_PKID);
+    }
+
+    private static long toId(Object id) {
+        return id != null
+                ? (Long) id
+                : Long.MIN_VALUE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Set<Long>> getParents(Session session, Class< ? > entityType) {
+        List<Object[]> relations = session.createCriteria(entityType)
+                                          .createAlias(PROPERTY_PARENTS, PARENT_ALIAS, JoinType.INNER_JOIN)
+                                          .setProjection(Projections.projectionList()
+                                                                    .add(Projections.id())
+                                                                    .add(property(PARENT_ALIAS,
+                                                                                  DescribableEntity.PROPERTY_PKID)))
+                                          .list();
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        for (Object[] relation : relations) {
+            parents.computeIfAbsent((Long) relation[0], child -> new HashSet<>())
+                   .add((Long) relation[1]);
+        }
+        return parents;
+    }
+
+    public void setSessionStore(HibernateSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    public void setMetadataCacheEvictor(MetadataCacheEvictor metadataCacheEvictor) {
+        this.metadataCacheEvictor = metadataCacheEvictor;
+    }
+
+    private static final class Snapshot {
+
+        private final int size;
+
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+
+        // entity ids per ordinal
+        private final Map<String, long[]> columns = new HashMap<>();
+
+        // datasets per entity id
+        private final Map<String, Map<Long, BitSet>> bitsets = new HashMap<>();
+
+        // datasets of all descendants per ancestor entity id
+        private final Map<String, Map<Long, BitSet>> parentBitsets = new HashMap<>();
+
+        // descendant entity ids per ancestor entity id
+        private final Map<String, Map<Long, Set<Long>>> descendants = new HashMap<>();
+
+        private final Map<String, BitSet> valueTypes = new HashMap<>();
+
+        // null values match neither of a pair (as in SQL)
+        private final BitSet mobile;
+
+        private final BitSet stationary;
+
+        private final BitSet insitu;
+
+        private final BitSet remote;
+
+        private Snapshot(int size) {
+            this.size = size;
+            this.mobile = new BitSet(size);
+            this.stationary = new BitSet(size);
+            this.insitu = new BitSet(size);
+            this.remote = new BitSet(size);
+        }
+
+        private long[] addColumn(String property) {
+            long[] column = new long[size];
+            columns.put(property, column);
+            return column;
+        }
+
+        private <K> void add(Map<K, BitSet> index, K key, int ordinal) {
+            if (key != null) {
+                index.computeIfAbsent(key, k -> new BitSet(size))
+                     .set(ordinal);
+            }
+        }
+
+        private void indexColumns() {
+            for (Map.Entry<String, long[]> column : columns.entrySet()) {
+                Map<Long, BitSet> datasets = new HashMap<>();
+                long[] ids = column.getValue();
+                for (int ordinal = 0; ordinal < size; ordinal++) {
+                    add(datasets, ids[ordinal], ordinal);
+                }
+                bitsets.put(column.getKey(), datasets);
+            }
+        }
+
+        private void addParents(String property, Map<Long, Set<Long>> parentsByChild) {
+            Map<Long, BitSet> datasets = bitsets.get(property);
+            Map<Long, BitSet> children = new HashMap<>();
+            Map<Long, Set<Long>> closure = new HashMap<>();
+            for (Long child : parentsByChild.keySet()) {
+                BitSet childDatasets = datasets.get(child);
+                for (Long ancestor : getAncestors(child, parentsByChild)) {
+                    closure.computeIfAbsent(ancestor, a -> new HashSet<>())
+                           .add(child);
+                    if (childDatasets != null) {
+                        children.computeIfAbsent(ancestor, a -> new BitSet(size))
+                                .or(childDatasets);
+                    }
+                }
+            }
+            parentBitsets.put(property, children);
+            descendants.put(property, closure);
+        }
+
+        private Set<Long> getAncestors(Long child, Map<Long, Set<Long>> parentsByChild) {
+            Set<Long> ancestors = new HashSet<>();
+            Deque<Long> pending = new ArrayDeque<>(parentsByChild.get(child));
+            while (!pending.isEmpty()) {
+                Long parent = pending.pop();
+                // visited check guards against cyclic hierarchies
+                if (!parent.equals(child) && ancestors.add(parent)) {
+                    pending.addAll(parentsByChild.getOrDefault(parent, Collections.emptySet()));
+                }
+            }
+            return ancestors;
+        }
+
+        private <K> BitSet union(Map<K, BitSet> index, Collection<K> keys) {
+            BitSet result = new BitSet(size);
+            if (index != null) {
+                for (K key : keys) {
+                    BitSet matches = index.get(key);
+                    if (matches != null) {
+                        result.or(matches);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private BitSet getPlatformTypeMatches(FilterResolver filterResolver) {
+            // same semantics as AbstractDao#addPlatformTypeFilter()
+            boolean includeStationary = filterResolver.shallIncludeStationaryPlatformTypes();
+            boolean includeMobile = filterResolver.shallIncludeMobilePlatformTypes();
+            boolean includeInsitu = filterResolver.shallIncludeInsituPlatformTypes();
+            boolean includeRemote = filterResolver.shallIncludeRemotePlatformTypes();
+            BitSet mobileMatches = new BitSet(size);
+            if (!includeStationary || includeMobile) {
+                mobileMatches.or(mobile);
+            }
+            if (includeStationary || !includeMobile) {
+                mobileMatches.or(stationary);
+            }
+            BitSet insituMatches = new BitSet(size);
+            if (includeInsitu || !includeRemote) {
+                insituMatches.or(insitu);
+            }
+            if (!includeInsitu || includeRemote) {
+                insituMatches.or(remote);
+            }
+            mobileMatches.and(insituMatches);
+            return mobileMatches;
+        }
+
+    }
+
+}
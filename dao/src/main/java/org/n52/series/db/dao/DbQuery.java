@@ -31,6 +31,7 @@ package org.n52.series.db.dao;
 
 import static java.util.stream.Collectors.toSet;
 
+import java.math.BigDecimal;
 import java.util.Date;
 import java.util.Set;
 
@@ -46,6 +47,7 @@ import org.hibernate.spatial.criterion.SpatialRestrictions;
 import org.hibernate.sql.JoinType;
 import org.joda.time.Instant;
 import org.joda.time.Interval;
+import org.joda.time.Period;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 import org.slf4j.Logger;
@@ -62,6 +64,7 @@ import org.n52.io.response.dataset.ValueType;
 import org.n52.series.db.DataModelUtil;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
+import org.n52.web.exception.BadRequestException;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Point;
@@ -78,10 +81,116 @@ public class DbQuery {
 
     private static final int DEFAULT_LIMIT = 10000;
 
+    /**
+     * Lower bound of the vertical range (e.g. a depth) profile layers have to match.
+     */
+    public static final String VERTICAL_MIN = "verticalMin";
+
+    /**
+     * Upper bound of the vertical range (e.g. a depth) profile layers have to match.
+     */
+    public static final String VERTICAL_MAX = "verticalMax";
+
+    /**
+     * Requests data to be aggregated instead of returning single observations.
+     */
+    public static final String AGGREGATION = "aggregation";
+
+    /**
+     * The time bucket data is aggregated by, one of <code>hour</code>, <code>day</code>, <code>week</code>,
+     * <code>month</code> or <code>year</code>.
+     */
+    public static final String AGGREGATION_BUCKET = "aggregationBucket";
+
+    private static final String DEFAULT_AGGREGATION_BUCKET = "day";
+
+    /**
+     * Full text search on text observations. Only observations containing all words are returned.
+     * <p>
+     * On PostgreSQL words are determined by the <code>simple</code> text search configuration. Other
+     * databases split at every character which is neither a letter nor a digit, so hyphenated words, e-mail
+     * addresses, URLs and decimal numbers may match differently (see {@link
+     * org.n52.series.db.da.TextSearchIndex}).
+     */
+    public static final String TEXT_SEARCH = "textSearch";
+
+    /**
+     * The bound values have to exceed for exceedance aggregations.
+     */
+    public static final String THRESHOLD = "threshold";
+
+    /**
+     * Whether values have to be <code>above</code> (default) or <code>below</code> the threshold.
+     */
+    public static final String THRESHOLD_DIRECTION = "thresholdDirection";
+
+    /**
+     * The minimum duration (ISO8601 period of fixed length) of exceedance intervals.
+     */
+    public static final String MIN_DURATION = "minDuration";
+
+    private static final String THRESHOLD_ABOVE = "above";
+
+    private static final String THRESHOLD_BELOW = "below";
+
+    /**
+     * Comma separated quantiles (within <code>[0, 1]</code>) for quantile aggregations.
+     */
+    public static final String QUANTILES = "quantiles";
+
+    /**
+     * Resamples data to a regular grid with the given step (ISO8601 period of fixed length).
+     */
+    public static final String RESAMPLE_STEP = "resampleStep";
+
+    /**
+     * How values are interpolated at grid points, one of <code>linear</code> (default), <code>previous</code>
+     * or <code>nearest</code>.
+     */
+    public static final String RESAMPLE_INTERPOLATION = "resampleInterpolation";
+
+    /**
+     * How gaps in the data are handled, one of <code>interpolate</code> (default), <code>null</code> or
+     * <code>omit</code>.
+     */
+    public static final String RESAMPLE_GAP_FILL = "resampleGapFill";
+
+    /**
+     * The maximum duration (ISO8601 period of fixed length) between observations not considered a gap.
+     * Defaults to the resample step.
+     */
+    public static final String RESAMPLE_MAX_GAP = "resampleMaxGap";
+
+    /**
+     * Field selecting the result time of data values.
+     */
+    public static final String FIELD_RESULT_TIME = "resultTime";
+
+    /**
+     * Field selecting the valid time of (expanded) data values.
+     */
+    public static final String FIELD_VALID_TIME = "validTime";
+
+    /**
+     * Field selecting the parameters of (expanded) data values.
+     */
+    public static final String FIELD_PARAMETERS = "parameters";
+
+    /**
+     * Field selecting the geometry of data values (expanded or mobile).
+     */
+    public static final String FIELD_GEOMETRY = "geometry";
+
+    private static final String DEFAULT_RESAMPLE_INTERPOLATION = "linear";
+
+    private static final String DEFAULT_RESAMPLE_GAP_FILL = "interpolate";
+
     private IoParameters parameters = IoParameters.createDefaults();
 
     private String databaseSridCode = "EPSG:4326";
 
+    private DatasetFilterIndex datasetFilterIndex;
+
     public DbQuery(IoParameters parameters) {
         if (parameters != null) {
             this.parameters = parameters;
@@ -96,6 +205,18 @@ public class DbQuery {
         this.databaseSridCode = databaseSridCode;
     }
 
+    /**
+     * @return the index to evaluate dataset filters with, <code>null</code> if filters have to be evaluated
+     *         by the database
+     */
+    public DatasetFilterIndex getDatasetFilterIndex() {
+        return datasetFilterIndex;
+    }
+
+    public void setDatasetFilterIndex(DatasetFilterIndex datasetFilterIndex) {
+        this.datasetFilterIndex = datasetFilterIndex;
+    }
+
     public String getHrefBase() {
         return parameters.getHrefBase();
     }
@@ -146,6 +267,181 @@ public class DbQuery {
         return parameters.getAsBoolean(Parameters.COMPLEX_PARENT, false);
     }
 
+    public BigDecimal getVerticalMin() {
+        return getVerticalBound(VERTICAL_MIN);
+    }
+
+    public BigDecimal getVerticalMax() {
+        return getVerticalBound(VERTICAL_MAX);
+    }
+
+    public boolean isSetVerticalFilter() {
+        return getVerticalMin() != null
+                || getVerticalMax() != null;
+    }
+
+    public String getAggregation() {
+        return parameters.containsParameter(AGGREGATION)
+                ? parameters.getAsString(AGGREGATION)
+                : null;
+    }
+
+    public boolean isAggregation(String aggregation) {
+        return aggregation.equalsIgnoreCase(getAggregation());
+    }
+
+    public String getAggregationBucket() {
+        return parameters.containsParameter(AGGREGATION_BUCKET)
+                ? parameters.getAsString(AGGREGATION_BUCKET)
+                : DEFAULT_AGGREGATION_BUCKET;
+    }
+
+    public TimeBucket getTimeBucket() {
+        String bucket = getAggregationBucket();
+        try {
+            return TimeBucket.fromString(bucket);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid value for '" + AGGREGATION_BUCKET + "': " + bucket, e);
+        }
+    }
+
+    public String getTextSearch() {
+        return parameters.containsParameter(TEXT_SEARCH)
+                ? parameters.getAsString(TEXT_SEARCH)
+                : null;
+    }
+
+    public BigDecimal getThreshold() {
+        if (!parameters.containsParameter(THRESHOLD)) {
+            throw new BadRequestException("Missing parameter '" + THRESHOLD + "'.");
+        }
+        return parseDecimal(THRESHOLD);
+    }
+
+    public boolean isThresholdBelow() {
+        if (!parameters.containsParameter(THRESHOLD_DIRECTION)) {
+            return false;
+        }
+        String direction = parameters.getAsString(THRESHOLD_DIRECTION)
+                                     .trim();
+        if (!THRESHOLD_ABOVE.equalsIgnoreCase(direction) && !THRESHOLD_BELOW.equalsIgnoreCase(direction)) {
+            throw new BadRequestException("Invalid value for '" + THRESHOLD_DIRECTION + "': " + direction);
+        }
+        return THRESHOLD_BELOW.equalsIgnoreCase(direction);
+    }
+
+    /**
+     * @return the minimum duration in milliseconds, <code>0</code> if not set
+     */
+    public long getMinDuration() {
+        return parameters.containsParameter(MIN_DURATION)
+                ? parseDuration(MIN_DURATION)
+                : 0;
+    }
+
+    /**
+     * @return if the <code>fields</code> parameter restricts the output
+     */
+    public boolean isSetFieldSelection() {
+        Set<String> fields = parameters.getFields();
+        return fields != null
+                && !fields.isEmpty();
+    }
+
+    /**
+     * @param field
+     *        the field to check
+     * @return if the field shall be output, i.e. no field selection is set or the field is selected
+     */
+    public boolean isFieldSelected(String field) {
+        if (!isSetFieldSelection()) {
+            return true;
+        }
+        for (String selected : parameters.getFields()) {
+            if (selected.equalsIgnoreCase(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isResampling() {
+        return parameters.containsParameter(RESAMPLE_STEP);
+    }
+
+    /**
+     * @return the resampling settings, <code>null</code> if no resampling was requested
+     */
+    public Resampling getResampling() {
+        if (!isResampling()) {
+            return null;
+        }
+        long step = parseDuration(RESAMPLE_STEP);
+        long maxGap = parameters.containsParameter(RESAMPLE_MAX_GAP)
+                ? parseDuration(RESAMPLE_MAX_GAP)
+                : step;
+        String interpolation = parameters.containsParameter(RESAMPLE_INTERPOLATION)
+                ? parameters.getAsString(RESAMPLE_INTERPOLATION)
+                : DEFAULT_RESAMPLE_INTERPOLATION;
+        String gapFill = parameters.containsParameter(RESAMPLE_GAP_FILL)
+                ? parameters.getAsString(RESAMPLE_GAP_FILL)
+                : DEFAULT_RESAMPLE_GAP_FILL;
+        try {
+            return new Resampling(step,
+                                  Resampling.Interpolation.fromString(interpolation),
+                                  Resampling.GapFill.fromString(gapFill),
+                                  maxGap);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    private long parseDuration(String parameter) {
+        String value = parameters.getAsString(parameter);
+        try {
+            return Period.parse(value.trim())
+                         .toStandardDuration()
+                         .getMillis();
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            throw new BadRequestException("Invalid value for '" + parameter + "': " + value, e);
+        }
+    }
+
+    public double[] getQuantiles() {
+        if (!parameters.containsParameter(QUANTILES)) {
+            throw new BadRequestException("Missing parameter '" + QUANTILES + "'.");
+        }
+        String value = parameters.getAsString(QUANTILES);
+        String[] values = value.split(",");
+        double[] quantiles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                quantiles[i] = Double.parseDouble(values[i].trim());
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid value for '" + QUANTILES + "': " + value, e);
+            }
+            if (quantiles[i] < 0 || quantiles[i] > 1) {
+                throw new BadRequestException("Quantiles must be within [0, 1]: " + value);
+            }
+        }
+        return quantiles;
+    }
+
+    private BigDecimal getVerticalBound(String parameter) {
+        return parameters.containsParameter(parameter)
+                ? parseDecimal(parameter)
+                : null;
+    }
+
+    private BigDecimal parseDecimal(String parameter) {
+        String value = parameters.getAsString(parameter);
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid value for '" + parameter + "': " + value, e);
+        }
+    }
+
     public Set<String> getValueTypes() {
         return parameters.getValueTypes();
     }
@@ -180,13 +476,26 @@ public class DbQuery {
 
     public Criteria addTimespanTo(Criteria criteria) {
         IntervalWithTimeZone timespan = parameters.getTimespan();
-        if (timespan != null) {
-            Interval interval = timespan.toInterval();
-            Date start = interval.getStart().toDate();
-            Date end = interval.getEnd().toDate();
-            criteria.add(Restrictions.or(Restrictions.between(DataEntity.PROPERTY_TIMESTART, start, end),
-                                         Restrictions.between(DataEntity.PROPERTY_TIMEEND, start, end)));
-        }
+        return timespan != null
+                ? addTimespanTo(criteria, timespan.toInterval())
+                : criteria;
+    }
+
+    /**
+     * Restricts the given criteria to observations which start or end within the given interval (bounds
+     * inclusive). In contrast to {@link #addTimespanTo(Criteria)} the requested timespan is ignored.
+     *
+     * @param criteria
+     *        the criteria to restrict
+     * @param interval
+     *        the interval observations have to fall into
+     * @return the criteria for chaining
+     */
+    public Criteria addTimespanTo(Criteria criteria, Interval interval) {
+        Date start = interval.getStart().toDate();
+        Date end = interval.getEnd().toDate();
+        criteria.add(Restrictions.or(Restrictions.between(DataEntity.PROPERTY_TIMESTART, start, end),
+                                     Restrictions.between(DataEntity.PROPERTY_TIMEEND, start, end)));
         return criteria;
     }
 
@@ -212,7 +521,7 @@ public class DbQuery {
         return parameters.getODataFilter().map(generator::create).map(criteria::add).orElse(criteria);
     }
 
-    private Criteria addLimitAndOffsetFilter(Criteria criteria) {
+    public Criteria addLimitAndOffsetFilter(Criteria criteria) {
         if (getParameters().containsParameter(Parameters.OFFSET)) {
             int limit = (getParameters().containsParameter(Parameters.LIMIT))
                     ? getParameters().getLimit()
@@ -248,6 +557,14 @@ public class DbQuery {
             return criteria;
         }
 
+        Set<Long> indexedIds = datasetFilterIndex != null
+                ? datasetFilterIndex.getMatchingIds(this, datasetName, true)
+                : null;
+        if (indexedIds != null) {
+            String idProperty = QueryUtils.createAssociation(datasetName, PROPERTY_PKID);
+            return criteria.add(QueryUtils.createIdRestriction(idProperty, indexedIds));
+        }
+
         DetachedCriteria filter = DetachedCriteria.forClass(DatasetEntity.class);
         if (hasValues(platforms)) {
             features.addAll(getStationaryIds(platforms));
@@ -273,16 +590,32 @@ public class DbQuery {
         return criteria;
     }
 
+    /**
+     * Restricts the datasets to the given entities and their descendants. The descendants at any depth are
+     * resolved via the hierarchy closure of the {@link DatasetFilterIndex}. Without the index, or when
+     * matching domain ids, the database is queried via the <code>parents</code> association, which covers
+     * direct children only, i.e. datasets of grandchildren do not match a filter by their grandparent.
+     */
     private DetachedCriteria addHierarchicalFilterRestriction(Set<String> values,
                                                               String entity,
                                                               DetachedCriteria filter,
                                                               String prefix) {
         if (hasValues(values)) {
-            filter.createCriteria(entity, prefix + "e")
-                  // join the parents to enable filtering via parent ids
-                  .createAlias(prefix + "e.parents", prefix + "p", JoinType.LEFT_OUTER_JOIN)
-                  .add(Restrictions.or(createIdCriterion(values, prefix + "e"),
-                                       Restrictions.in(prefix + "p.pkid", QueryUtils.parseToIds(values))));
+            Set<Long> closure = datasetFilterIndex != null && !isMatchDomainIds()
+                    ? datasetFilterIndex.getSelfAndDescendantIds(entity, QueryUtils.parseToIds(values))
+                    : null;
+            if (closure != null) {
+                // hierarchy closure covers descendants at any depth
+                String idProperty = QueryUtils.createAssociation(prefix + "e", PROPERTY_PKID);
+                filter.createCriteria(entity, prefix + "e")
+                      .add(QueryUtils.createIdRestriction(idProperty, closure));
+            } else {
+                filter.createCriteria(entity, prefix + "e")
+                      // join the parents to enable filtering via parent ids
+                      .createAlias(prefix + "e.parents", prefix + "p", JoinType.LEFT_OUTER_JOIN)
+                      .add(Restrictions.or(createIdCriterion(values, prefix + "e"),
+                                           Restrictions.in(prefix + "p.pkid", QueryUtils.parseToIds(values))));
+            }
         }
         return filter;
     }
@@ -29,15 +29,21 @@
 package org.n52.series.db.dao;
 
 import org.n52.io.request.IoParameters;
+import org.springframework.beans.factory.annotation.Autowired;
 
 public class DefaultDbQueryFactory implements DbQueryFactory {
 
     private String databaseSrid = "EPSG:4326";
 
+    // optional, dataset filters are evaluated by the database if not configured
+    @Autowired(required = false)
+    private DatasetFilterIndex datasetFilterIndex;
+
     @Override
     public DbQuery createFrom(IoParameters parameters) {
         DbQuery query = new DbQuery(parameters);
         query.setDatabaseSridCode(databaseSrid);
+        query.setDatasetFilterIndex(datasetFilterIndex);
         return query;
     }
 
@@ -50,4 +56,12 @@ public class DefaultDbQueryFactory implements DbQueryFactory {
     public void setDatabaseSrid(String databaseSrid) {
         this.databaseSrid = databaseSrid;
     }
+
+    public DatasetFilterIndex getDatasetFilterIndex() {
+        return datasetFilterIndex;
+    }
+
+    public void setDatasetFilterIndex(DatasetFilterIndex datasetFilterIndex) {
+        this.datasetFilterIndex = datasetFilterIndex;
+    }
 }
@@ -33,11 +33,17 @@ import java.util.List;
 
 import org.hibernate.Criteria;
 import org.hibernate.Session;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.transform.Transformers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.n52.series.db.DataAccessException;
+import org.n52.series.db.MetadataCacheEvictor;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.I18nEntity;
 
@@ -68,6 +74,56 @@ public abstract class ParameterDao<T extends DescribableEntity, I extends I18nEn
         LOGGER.debug("get all instances: {}", query);
         Criteria criteria = getDefaultCriteria(query);
         criteria = i18n(getI18NEntityClass(), criteria, query);
-        return query.addFilters(criteria, getDatasetProperty()).list();
+        return cacheable(query.addFilters(criteria, getDatasetProperty())).list();
+    }
+
+    /**
+     * Loads the identifying columns only. Instances are returned as detached entities holding id, domain id
+     * and name, so neither geometries, parameters nor lazy associations get loaded. Falls back to
+     * {@link #getAllInstances(DbQuery)} if names have to be translated.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> getAllCondensedInstances(DbQuery query) throws DataAccessException {
+        if (hasTranslation(query, getI18NEntityClass())) {
+            return getAllInstances(query);
+        }
+        LOGGER.debug("get all condensed instances: {}", query);
+        ProjectionList projections = Projections.projectionList()
+                                                .add(Projections.property(DescribableEntity.PROPERTY_PKID),
+                                                     DescribableEntity.PROPERTY_PKID)
+                                                .add(Projections.property(DescribableEntity.PROPERTY_DOMAIN_ID),
+                                                     DescribableEntity.PROPERTY_DOMAIN_ID)
+                                                .add(Projections.property(DescribableEntity.PROPERTY_NAME),
+                                                     DescribableEntity.PROPERTY_NAME);
+        Criteria criteria = getDefaultCriteria(query).setProjection(Projections.distinct(projections))
+                                                     .setResultTransformer(Transformers.aliasToBean(getEntityClass()));
+        return cacheable(query.addFilters(criteria, getDatasetProperty())).list();
+    }
+
+    @Override
+    protected T getInstance(String key, DbQuery query, Class<T> clazz, Criteria criteria) {
+        return super.getInstance(key, query, clazz, cacheable(criteria));
+    }
+
+    /**
+     * Caches query results if the entity itself is cached in the second level cache, i.e. metadata caching is
+     * enabled per entity via its mapping. For entity queries this is required anyway, as cached results hold
+     * entity ids only and would load each entity separately otherwise. Results of scalar projections (see
+     * {@link #getAllCondensedInstances(DbQuery)}) are held by the query cache itself and follow the entity's
+     * setting only to be switched on and off together with it.
+     *
+     * @param criteria
+     *        the criteria to cache
+     * @return the criteria for chaining
+     */
+    protected Criteria cacheable(Criteria criteria) {
+        ClassMetadata metadata = session.getSessionFactory()
+                                        .getClassMetadata(getEntityClass());
+        if (metadata instanceof EntityPersister && ((EntityPersister) metadata).hasCache()) {
+            criteria.setCacheable(true)
+                    .setCacheRegion(MetadataCacheEvictor.METADATA_QUERY_REGION);
+        }
+        return criteria;
     }
 }
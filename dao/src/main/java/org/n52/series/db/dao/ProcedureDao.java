@@ -30,7 +30,11 @@
 package org.n52.series.db.dao;
 
 
+import java.util.Collection;
+import java.util.List;
+
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
 import org.hibernate.Session;
 import org.hibernate.criterion.Restrictions;
 import org.slf4j.Logger;
@@ -49,6 +53,8 @@ public class ProcedureDao extends ParameterDao<ProcedureEntity, I18nProcedureEnt
 
     private static final String COLUMN_REFERENCE = "reference";
 
+    private static final String PROPERTY_PARENTS = "parents";
+
     public ProcedureDao(Session session) {
         super(session);
     }
@@ -61,6 +67,31 @@ public class ProcedureDao extends ParameterDao<ProcedureEntity, I18nProcedureEnt
                                              .uniqueResult());
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ProcedureEntity> getInstances(Collection<Long> keys, DbQuery query) throws DataAccessException {
+        LOGGER.debug("get instances '{}': {}", keys, query);
+        Criteria criteria = getDefaultCriteria(true, query);
+        return criteria.add(QueryUtils.createIdRestriction(ProcedureEntity.PROPERTY_PKID, keys))
+                       .list();
+    }
+
+    /**
+     * Loads the procedures of all datasets matching the query, reference procedures included, together with
+     * their parents within a single statement.
+     *
+     * @param query
+     *        the query instance
+     * @return the procedures having initialized parents
+     */
+    @SuppressWarnings("unchecked")
+    public List<ProcedureEntity> getAllInstancesWithParents(DbQuery query) {
+        LOGGER.debug("get all instances with parents: {}", query);
+        Criteria criteria = getDefaultCriteria(false, query).setFetchMode(PROPERTY_PARENTS, FetchMode.JOIN);
+        return query.addDetachedFilters(getDatasetProperty(), criteria)
+                    .list();
+    }
+
     @Override
     public Criteria getDefaultCriteria(DbQuery query) {
         return getDefaultCriteria(true, query);
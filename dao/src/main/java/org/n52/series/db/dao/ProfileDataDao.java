@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.ProfileDataEntity;
+import org.n52.series.db.beans.ProfileDatasetEntity;
+import org.n52.series.db.beans.parameter.ObservationParameterQuantity;
+
+/**
+ * Data access for profile observations. Next to the default {@link DataDao} operations, the child
+ * observations (i.e. the layers) of profiles can be restricted to a vertical range. The range gets pushed
+ * into the database as subqueries on the numeric observation parameters named by the dataset (see
+ * {@link ProfileDatasetEntity#getVerticalParameterName()},
+ * {@link ProfileDatasetEntity#getVerticalFromParameterName()} and
+ * {@link ProfileDatasetEntity#getVerticalToParameterName()}).
+ * <p>
+ * A layer matches if its vertical value lies within the range, or, for layers having a from/to extent,
+ * if the extent overlaps the range. Both bounds are inclusive and optional.
+ */
+public class ProfileDataDao extends DataDao<ProfileDataEntity> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileDataDao.class);
+
+    private static final String PROFILE_ALIAS = "profile";
+
+    private static final String CHILD_ALIAS = "child";
+
+    private static final String VERTICAL_ALIAS = "vertical";
+
+    private static final String VERTICAL_FROM_ALIAS = "verticalFrom";
+
+    private static final String VERTICAL_TO_ALIAS = "verticalTo";
+
+    private static final String PROFILE_PKID = QueryUtils.createAssociation(PROFILE_ALIAS, DataEntity.PROPERTY_PKID);
+
+    private static final String CHILD_PKID = QueryUtils.createAssociation(CHILD_ALIAS, DataEntity.PROPERTY_PKID);
+
+    private static final String PARAMETER_OBSERVATION = "fkId";
+
+    private static final String PARAMETER_NAME = "name";
+
+    private static final String PARAMETER_VALUE = "value";
+
+    public ProfileDataDao(Session session) {
+        super(session, ProfileDataEntity.class);
+    }
+
+    /**
+     * Retrieves those child observations of the given profiles which match the vertical range of the query.
+     *
+     * @param profileIds
+     *        the ids of the profile observations.
+     * @param dataset
+     *        the profile dataset naming the vertical parameters.
+     * @param query
+     *        the query containing the vertical range.
+     * @return the matching child observations mapped by the id of their profile observation. Profiles without
+     *         matching child observations are not contained.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, Set<DataEntity< ? >>> getChildrenWithinVertical(Collection<Long> profileIds,
+                                                                    ProfileDatasetEntity dataset,
+                                                                    DbQuery query) {
+        if (profileIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        LOGGER.debug("get children within vertical [{}, {}] for profiles {}",
+                     query.getVerticalMin(),
+                     query.getVerticalMax(),
+                     profileIds);
+
+        Criteria links = createChildLinks(profileIds, dataset, query).getExecutableCriteria(session);
+        links.setProjection(Projections.projectionList()
+                                       .add(Projections.property(PROFILE_PKID))
+                                       .add(Projections.property(CHILD_PKID)));
+        Map<Long, Set<Long>> profileIdsByChild = new HashMap<>();
+        for (Object[] link : (List<Object[]>) links.list()) {
+            Long childId = (Long) link[1];
+            if (!profileIdsByChild.containsKey(childId)) {
+                profileIdsByChild.put(childId, new HashSet<>());
+            }
+            profileIdsByChild.get(childId).add((Long) link[0]);
+        }
+        if (profileIdsByChild.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        DetachedCriteria childIds = createChildLinks(profileIds, dataset, query);
+        childIds.setProjection(Projections.property(CHILD_PKID));
+        Criteria children = session.createCriteria(DataEntity.class)
+                                   .add(Subqueries.propertyIn(DataEntity.PROPERTY_PKID, childIds))
+                                   .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE))
+                                   .addOrder(Order.asc(DataEntity.PROPERTY_PKID))
+                                   .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(toSQLString(children));
+        }
+
+        Map<Long, Set<DataEntity< ? >>> childrenByProfile = new HashMap<>();
+        for (DataEntity< ? > child : (List<DataEntity< ? >>) children.list()) {
+            for (Long profileId : profileIdsByChild.get(child.getPkid())) {
+                if (!childrenByProfile.containsKey(profileId)) {
+                    childrenByProfile.put(profileId, new LinkedHashSet<>());
+                }
+                childrenByProfile.get(profileId).add(child);
+            }
+        }
+        return childrenByProfile;
+    }
+
+    private DetachedCriteria createChildLinks(Collection<Long> profileIds,
+                                              ProfileDatasetEntity dataset,
+                                              DbQuery query) {
+        return DetachedCriteria.forClass(ProfileDataEntity.class, PROFILE_ALIAS)
+                               .createAlias(QueryUtils.createAssociation(PROFILE_ALIAS, DataEntity.PROPERTY_VALUE),
+                                            CHILD_ALIAS)
+                               .add(Restrictions.in(PROFILE_PKID, profileIds))
+                               .add(createVerticalRestriction(dataset, query));
+    }
+
+    private Criterion createVerticalRestriction(ProfileDatasetEntity dataset, DbQuery query) {
+        BigDecimal min = query.getVerticalMin();
+        BigDecimal max = query.getVerticalMax();
+        Disjunction restriction = Restrictions.disjunction();
+        if (dataset.getVerticalParameterName() != null) {
+            String name = dataset.getVerticalParameterName();
+            restriction.add(Subqueries.propertyIn(CHILD_PKID, createVerticalSubquery(VERTICAL_ALIAS, name, min, max)));
+        }
+        if (dataset.getVerticalFromParameterName() != null && dataset.getVerticalToParameterName() != null) {
+            // layer extent [from, to] overlaps [min, max]
+            String fromName = dataset.getVerticalFromParameterName();
+            String toName = dataset.getVerticalToParameterName();
+            restriction.add(Restrictions.and(
+                    Subqueries.propertyIn(CHILD_PKID, createVerticalSubquery(VERTICAL_FROM_ALIAS, fromName, null, max)),
+                    Subqueries.propertyIn(CHILD_PKID, createVerticalSubquery(VERTICAL_TO_ALIAS, toName, min, null))));
+        }
+        return restriction;
+    }
+
+    private DetachedCriteria createVerticalSubquery(String alias,
+                                                    String parameterName,
+                                                    BigDecimal lower,
+                                                    BigDecimal upper) {
+        DetachedCriteria subquery = DetachedCriteria.forClass(ObservationParameterQuantity.class, alias)
+                                                    .add(Restrictions.eq(PARAMETER_NAME, parameterName));
+        if (lower != null) {
+            subquery.add(Restrictions.ge(PARAMETER_VALUE, lower));
+        }
+        if (upper != null) {
+            subquery.add(Restrictions.le(PARAMETER_VALUE, upper));
+        }
+        return subquery.setProjection(Projections.property(PARAMETER_OBSERVATION));
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.type.BigDecimalType;
+import org.hibernate.type.Type;
+import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.series.db.DataAccessException;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.series.db.beans.QuantityDatasetEntity;
+
+/**
+ * Data access for quantity observations, additionally able to detect intervals where values exceed a
+ * threshold and to retrieve plain values.
+ */
+public class QuantityDataDao extends DataDao<QuantityDataEntity> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuantityDataDao.class);
+
+    // same tolerance as QuantityDataEntity#isNoDataValue()
+    private static final String NO_DATA_TOLERANCE = "0.0001";
+
+    private static final String RUN_START = "runstart";
+
+    private static final String RUN_END = "runend";
+
+    private static final String PEAK = "peak";
+
+    public QuantityDataDao(Session session) {
+        super(session, QuantityDataEntity.class);
+    }
+
+    /**
+     * Detects the intervals within the query's timespan where consecutive values are above (or below) the
+     * query's threshold. Values equal to the threshold, no-data values and missing values end an interval.
+     * On PostgreSQL, intervals are detected by the database (run detection via the <code>LAG</code> window
+     * function) so that single observations are never transferred. On other databases observations are
+     * checked in memory.
+     * <p>
+     * Within the database, result time, spatial and OData filters are not applied.
+     *
+     * @param dataset
+     *        the quantity dataset.
+     * @param query
+     *        the query containing timespan, threshold, direction and minimum duration.
+     * @param noDataValues
+     *        the no-data values of the dataset.
+     * @return one (transient) observation per interval, spanning the interval and holding the peak value
+     *         (maximum when above, minimum when below), ordered by time.
+     * @throws DataAccessException
+     *         if accessing database fails.
+     */
+    public List<QuantityDataEntity> getExceedances(QuantityDatasetEntity dataset,
+                                                   DbQuery query,
+                                                   Collection<BigDecimal> noDataValues)
+            throws DataAccessException {
+        LOGGER.debug("get exceedances for series '{}': {}", dataset.getPkid(), query);
+        return QueryUtils.isPostgreSQL(session)
+                ? detectExceedances(dataset, query, noDataValues)
+                : detectExceedancesInMemory(dataset, query, noDataValues);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<QuantityDataEntity> detectExceedances(QuantityDatasetEntity dataset,
+                                                       DbQuery query,
+                                                       Collection<BigDecimal> noDataValues) {
+        String sql = createExceedanceSql(query.isThresholdBelow(), noDataValues.size());
+        LOGGER.debug(sql);
+
+        // zonal timestamp type as mapped
+        Type timestampType = session.getSessionFactory()
+                                    .getClassMetadata(QuantityDataEntity.class)
+                                    .getPropertyType(DataEntity.PROPERTY_TIMEEND);
+        Interval timespan = query.getTimespan();
+        SQLQuery sqlQuery = session.createSQLQuery(sql);
+        sqlQuery.addScalar(RUN_START, timestampType)
+                .addScalar(RUN_END, timestampType)
+                .addScalar(PEAK, BigDecimalType.INSTANCE)
+                .setLong("dataset", dataset.getPkid())
+                .setParameter("start", timespan.getStart().toDate(), timestampType)
+                .setParameter("end", timespan.getEnd().toDate(), timestampType)
+                .setBigDecimal("threshold", query.getThreshold())
+                .setLong("minDuration", query.getMinDuration());
+        int index = 0;
+        for (BigDecimal noDataValue : noDataValues) {
+            sqlQuery.setBigDecimal("noData" + index++, noDataValue);
+        }
+
+        List<QuantityDataEntity> exceedances = new ArrayList<>();
+        for (Object[] row : (List<Object[]>) sqlQuery.list()) {
+            exceedances.add(createExceedance((Date) row[0], (Date) row[1], (BigDecimal) row[2]));
+        }
+        return exceedances;
+    }
+
+    private String createExceedanceSql(boolean below, int noDataValueCount) {
+        StringBuilder exceeds = new StringBuilder("v.value ");
+        exceeds.append(below ? "<" : ">")
+               .append(" :threshold");
+        for (int i = 0; i < noDataValueCount; i++) {
+            exceeds.append(" and abs(v.value - :noData")
+                   .append(i)
+                   .append(") >= ")
+                   .append(NO_DATA_TOLERANCE);
+        }
+        String order = "order by timeend, observationid";
+        return new StringBuilder()
+                .append("select min(r.timestart) as ").append(RUN_START)
+                .append(", max(r.timeend) as ").append(RUN_END)
+                .append(", ").append(below ? "min" : "max").append("(r.value) as ").append(PEAK)
+                .append(" from (")
+                // numbers the runs of exceeding values
+                .append("select e.*, sum(case when e.exceeds and not coalesce(e.previous, false)")
+                .append(" then 1 else 0 end) over (").append(order).append(") as run")
+                .append(" from (")
+                .append("select x.*, lag(x.exceeds) over (").append(order).append(") as previous")
+                .append(" from (")
+                .append("select o.observationid, o.phenomenontimestart as timestart,")
+                .append(" o.phenomenontimeend as timeend, v.value,")
+                .append(" coalesce(").append(exceeds).append(", false) as exceeds")
+                .append(" from observation o join numericvalue v on v.observationid = o.observationid")
+                .append(" where o.seriesid = :dataset and o.deleted = 'F' and o.parent = 'F'")
+                .append(" and (o.phenomenontimestart between :start and :end")
+                .append(" or o.phenomenontimeend between :start and :end)")
+                .append(") x) e) r")
+                .append(" where r.exceeds group by r.run")
+                .append(" having extract(epoch from max(r.timeend) - min(r.timestart)) * 1000 >= :minDuration")
+                .append(" order by ").append(RUN_START)
+                .toString();
+    }
+
+    /**
+     * Retrieves the plain values of a dataset's observations ending within the given interval.
+     *
+     * @param datasetId
+     *        the id of the quantity dataset.
+     * @param interval
+     *        the interval observations have to end in (start inclusive, end exclusive).
+     * @return rows of observation end time and value (unordered).
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getValues(Long datasetId, Interval interval) {
+        Date start = interval.getStart()
+                             .toDate();
+        Date end = interval.getEnd()
+                           .toDate();
+        Criteria criteria = session.createCriteria(QuantityDataEntity.class)
+                                   .add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID, datasetId))
+                                   .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE))
+                                   .add(Restrictions.eq(DataEntity.PROPERTY_PARENT, false))
+                                   .add(Restrictions.ge(DataEntity.PROPERTY_TIMEEND, start))
+                                   .add(Restrictions.lt(DataEntity.PROPERTY_TIMEEND, end))
+                                   .setProjection(Projections.projectionList()
+                                                             .add(Projections.property(DataEntity.PROPERTY_TIMEEND))
+                                                             .add(Projections.property(DataEntity.PROPERTY_VALUE)));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(toSQLString(criteria));
+        }
+        return criteria.list();
+    }
+
+    private List<QuantityDataEntity> detectExceedancesInMemory(QuantityDatasetEntity dataset,
+                                                               DbQuery query,
+                                                               Collection<BigDecimal> noDataValues)
+            throws DataAccessException {
+        BigDecimal threshold = query.getThreshold();
+        boolean below = query.isThresholdBelow();
+        long minDuration = query.getMinDuration();
+        List<String> noData = new ArrayList<>();
+        for (BigDecimal noDataValue : noDataValues) {
+            noData.add(noDataValue.toPlainString());
+        }
+
+        List<QuantityDataEntity> exceedances = new ArrayList<>();
+        QuantityDataEntity run = null;
+        for (QuantityDataEntity observation : getAllInstancesFor(dataset, query)) {
+            BigDecimal value = observation.getValue();
+            boolean exceeds = !observation.isNoDataValue(noData)
+                    && (below
+                            ? value.compareTo(threshold) < 0
+                            : value.compareTo(threshold) > 0);
+            if (!exceeds) {
+                addIfLongEnough(run, minDuration, exceedances);
+                run = null;
+            } else if (run == null) {
+                run = createExceedance(observation.getTimestart(), observation.getTimeend(), value);
+            } else {
+                run.setTimeend(observation.getTimeend());
+                if (below
+                        ? value.compareTo(run.getValue()) < 0
+                        : value.compareTo(run.getValue()) > 0) {
+                    run.setValue(value);
+                }
+            }
+        }
+        addIfLongEnough(run, minDuration, exceedances);
+        return exceedances;
+    }
+
+    private void addIfLongEnough(QuantityDataEntity run, long minDuration, List<QuantityDataEntity> exceedances) {
+        if (run != null && run.getTimeend().getTime() - run.getTimestart().getTime() >= minDuration) {
+            exceedances.add(run);
+        }
+    }
+
+    private QuantityDataEntity createExceedance(Date start, Date end, BigDecimal peak) {
+        QuantityDataEntity exceedance = new QuantityDataEntity();
+        exceedance.setTimestart(start);
+        exceedance.setTimeend(end);
+        exceedance.setValue(peak);
+        return exceedance;
+    }
+
+}
@@ -29,16 +29,26 @@
 
 package org.n52.series.db.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.SimpleExpression;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 
 public class QueryUtils {
 
     static final String PROPERTY_PKID = "pkid";
 
+    private static final int MAX_IN_LIST_SIZE = 1000;
+
     public static String createAssociation(String alias, String property) {
         return alias != null && !alias.isEmpty()
                 ? alias + "." + property
@@ -51,6 +61,44 @@ public class QueryUtils {
                   .collect(Collectors.toSet());
     }
 
+    /**
+     * @param session
+     *        the session to check.
+     * @return <code>true</code> if the session's database is PostgreSQL (or PostGIS), so that PostgreSQL
+     *         specific functions can be used.
+     */
+    public static boolean isPostgreSQL(Session session) {
+        SessionFactoryImplementor factory = (SessionFactoryImplementor) session.getSessionFactory();
+        return factory.getDialect() instanceof PostgreSQL81Dialect;
+    }
+
+    /**
+     * @param property
+     *        the id property.
+     * @param ids
+     *        the ids to match.
+     * @return a restriction matching any of the given ids, split into multiple <code>in</code> lists if
+     *         necessary (some databases limit their size). Matches nothing if no ids are given.
+     */
+    public static Criterion createIdRestriction(String property, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Restrictions.sqlRestriction("1=0");
+        }
+        Disjunction idRestriction = Restrictions.disjunction();
+        List<Long> partition = new ArrayList<>(MAX_IN_LIST_SIZE);
+        for (Long id : ids) {
+            partition.add(id);
+            if (partition.size() == MAX_IN_LIST_SIZE) {
+                idRestriction.add(Restrictions.in(property, partition));
+                partition = new ArrayList<>(MAX_IN_LIST_SIZE);
+            }
+        }
+        if (!partition.isEmpty()) {
+            idRestriction.add(Restrictions.in(property, partition));
+        }
+        return idRestriction;
+    }
+
     public static SimpleExpression matchesPkid(String pkid) {
         return Restrictions.eq(PROPERTY_PKID, QueryUtils.parseToId(pkid));
     }
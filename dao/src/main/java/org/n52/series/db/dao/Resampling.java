@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import org.joda.time.Interval;
+import org.n52.web.exception.BadRequestException;
+
+/**
+ * Settings to resample data to a regular time grid. Grid points are multiples of the step (counted from the
+ * epoch) within the requested timespan, so grids of overlapping timespans are aligned.
+ */
+public class Resampling {
+
+    /**
+     * The maximum number of grid points of a single request.
+     */
+    public static final long MAXIMUM_GRID_POINTS = 100000;
+
+    /**
+     * How values at grid points are derived from the surrounding observations.
+     */
+    public enum Interpolation {
+
+        /**
+         * Linear interpolation between the previous and the next observation.
+         */
+        LINEAR,
+
+        /**
+         * The value of the previous observation (step function).
+         */
+        PREVIOUS,
+
+        /**
+         * The value of the closest observation.
+         */
+        NEAREST;
+
+        public static Interpolation fromString(String interpolation) {
+            for (Interpolation value : values()) {
+                if (value.name().equalsIgnoreCase(interpolation)) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported interpolation: " + interpolation);
+        }
+
+    }
+
+    /**
+     * How grid points within gaps (including those before the first and after the last observation) are
+     * handled.
+     */
+    public enum GapFill {
+
+        /**
+         * Gaps are interpolated regardless of their duration. Grid points outside the data are omitted.
+         */
+        INTERPOLATE,
+
+        /**
+         * Grid points within gaps get a <code>null</code> value.
+         */
+        NULL,
+
+        /**
+         * Grid points within gaps are omitted.
+         */
+        OMIT;
+
+        public static GapFill fromString(String gapFill) {
+            for (GapFill value : values()) {
+                if (value.name().equalsIgnoreCase(gapFill)) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported gap fill: " + gapFill);
+        }
+
+    }
+
+    private final long step;
+
+    private final Interpolation interpolation;
+
+    private final GapFill gapFill;
+
+    private final long maxGap;
+
+    /**
+     * @param step
+     *        the grid step in milliseconds
+     * @param interpolation
+     *        how values at grid points are derived
+     * @param gapFill
+     *        how gaps are handled
+     * @param maxGap
+     *        the maximum duration in milliseconds between observations not considered a gap
+     */
+    public Resampling(long step, Interpolation interpolation, GapFill gapFill, long maxGap) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Resample step must be positive.");
+        }
+        this.step = step;
+        this.interpolation = interpolation;
+        this.gapFill = gapFill;
+        this.maxGap = maxGap;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    public GapFill getGapFill() {
+        return gapFill;
+    }
+
+    public long getMaxGap() {
+        return maxGap;
+    }
+
+    /**
+     * @param previous
+     *        the time of the previous observation
+     * @param next
+     *        the time of the next observation
+     * @return if the observations are too far apart to derive values in between
+     */
+    public boolean isGap(long previous, long next) {
+        return gapFill != GapFill.INTERPOLATE
+                && next - previous > maxGap;
+    }
+
+    /**
+     * @param timespan
+     *        the requested timespan
+     * @return the first grid point within the timespan
+     */
+    public long getFirstGridPoint(Interval timespan) {
+        long start = timespan.getStartMillis();
+        long offset = Math.floorMod(start, step);
+        return offset == 0
+                ? start
+                : start - offset + step;
+    }
+
+    /**
+     * @param timespan
+     *        the requested timespan
+     * @return the timespan observations have to be queried for to derive values at all grid points
+     */
+    public Interval getDataTimespan(Interval timespan) {
+        long padding = gapFill == GapFill.INTERPOLATE
+                ? step
+                : Math.max(step, maxGap);
+        return new Interval(timespan.getStartMillis() - padding, timespan.getEndMillis() + padding);
+    }
+
+    /**
+     * @param timespan
+     *        the requested timespan
+     * @throws BadRequestException
+     *         if the timespan contains more than {@link #MAXIMUM_GRID_POINTS} grid points
+     */
+    public void assertGridSize(Interval timespan) {
+        long gridPoints = (timespan.getEndMillis() - getFirstGridPoint(timespan)) / step + 1;
+        if (gridPoints > MAXIMUM_GRID_POINTS) {
+            throw new BadRequestException("Resampling results in more than " + MAXIMUM_GRID_POINTS
+                    + " values, increase the step or reduce the timespan.");
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.TextDataEntity;
+import org.n52.series.db.beans.TextDatasetEntity;
+
+/**
+ * Data access for text observations, additionally able to search the observations' text.
+ */
+public class TextDataDao extends DataDao<TextDataEntity> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextDataDao.class);
+
+    private static final int MAX_BOUND_IDS = 1000;
+
+    public TextDataDao(Session session) {
+        super(session, TextDataEntity.class);
+    }
+
+    /**
+     * @return <code>true</code> if the database is able to do full text search, i.e.
+     *         {@link #getAllInstancesMatching(TextDatasetEntity, DbQuery, String)} can be used.
+     */
+    public boolean isFullTextSupported() {
+        return QueryUtils.isPostgreSQL(session);
+    }
+
+    /**
+     * Retrieves all observations of the given dataset matching the given query which contain all words of the
+     * search text. Matching is done by the database (see {@link TextSearchCriterion}).
+     *
+     * @param dataset
+     *        the text dataset.
+     * @param query
+     *        some query parameters to restrict result.
+     * @param searchText
+     *        the words to search for.
+     * @return all matching observations.
+     */
+    @SuppressWarnings("unchecked")
+    public List<TextDataEntity> getAllInstancesMatching(TextDatasetEntity dataset,
+                                                        DbQuery query,
+                                                        String searchText) {
+        LOGGER.debug("get all instances for series '{}' matching '{}': {}", dataset.getPkid(), searchText, query);
+        Criteria criteria = createDatasetCriteria(dataset, query);
+        criteria.add(new TextSearchCriterion(DataEntity.PROPERTY_VALUE, searchText));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(toSQLString(criteria));
+        }
+        return criteria.list();
+    }
+
+    /**
+     * Retrieves those observations of the given ids, or added after the given id, which belong to the given
+     * dataset and match the given query. Up to {@value #MAX_BOUND_IDS} ids are passed to the database, more
+     * ids are matched in memory while scrolling the observations of the query's timespan.
+     *
+     * @param dataset
+     *        the text dataset.
+     * @param query
+     *        some query parameters to restrict result.
+     * @param ids
+     *        the observation ids.
+     * @param afterPkid
+     *        observations with a greater id are returned, too.
+     * @return all observations with one of the given ids or a greater id matching the query.
+     */
+    @SuppressWarnings("unchecked")
+    public List<TextDataEntity> getAllInstancesFor(TextDatasetEntity dataset,
+                                                   DbQuery query,
+                                                   Collection<Long> ids,
+                                                   long afterPkid) {
+        if (ids.size() > MAX_BOUND_IDS) {
+            return getAllInstancesWithin(dataset, query, new HashSet<>(ids), afterPkid);
+        }
+        Criteria criteria = createDatasetCriteria(dataset, query);
+        return criteria.add(Restrictions.or(QueryUtils.createIdRestriction(DataEntity.PROPERTY_PKID, ids),
+                                            Restrictions.gt(DataEntity.PROPERTY_PKID, afterPkid)))
+                       .list();
+    }
+
+    private List<TextDataEntity> getAllInstancesWithin(TextDatasetEntity dataset,
+                                                       DbQuery query,
+                                                       Set<Long> ids,
+                                                       long afterPkid) {
+        List<TextDataEntity> matches = new ArrayList<>();
+        ScrollableResults observations = scrollAllInstancesFor(dataset, query);
+        try {
+            while (observations.next()) {
+                TextDataEntity observation = (TextDataEntity) observations.get(0);
+                if (ids.contains(observation.getPkid()) || observation.getPkid() > afterPkid) {
+                    matches.add(observation);
+                } else {
+                    session.evict(observation);
+                }
+            }
+        } finally {
+            observations.close();
+        }
+        return matches;
+    }
+
+    /**
+     * Retrieves id, dataset id and value of text observations to be indexed.
+     *
+     * @param afterPkid
+     *        only observations with a greater id are returned.
+     * @param maxResults
+     *        the maximum number of observations to return.
+     * @return rows of observation id, dataset id and value, ordered by observation id.
+     */
+    public List<Object[]> getIndexEntries(long afterPkid, int maxResults) {
+        return getIndexEntries(createIndexCriteria(afterPkid), maxResults);
+    }
+
+    /**
+     * Retrieves id, dataset id and value of the text observations of a dataset to be re-indexed.
+     *
+     * @param datasetId
+     *        the id of the dataset.
+     * @param afterPkid
+     *        only observations with a greater id are returned.
+     * @param untilPkid
+     *        only observations with a lower or equal id are returned.
+     * @param maxResults
+     *        the maximum number of observations to return.
+     * @return rows of observation id, dataset id and value, ordered by observation id.
+     */
+    public List<Object[]> getIndexEntries(Long datasetId, long afterPkid, long untilPkid, int maxResults) {
+        Criteria criteria = createIndexCriteria(afterPkid).add(Restrictions.le(DataEntity.PROPERTY_PKID, untilPkid))
+                                                          .add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID,
+                                                                               datasetId));
+        return getIndexEntries(criteria, maxResults);
+    }
+
+    private Criteria createIndexCriteria(long afterPkid) {
+        return session.createCriteria(TextDataEntity.class)
+                      .add(Restrictions.gt(DataEntity.PROPERTY_PKID, afterPkid))
+                      .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE))
+                      .add(Restrictions.eq(DataEntity.PROPERTY_PARENT, false));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> getIndexEntries(Criteria criteria, int maxResults) {
+        return criteria.addOrder(Order.asc(DataEntity.PROPERTY_PKID))
+                       .setProjection(Projections.projectionList()
+                                                 .add(Projections.property(DataEntity.PROPERTY_PKID))
+                                                 .add(Projections.property(DataEntity.PROPERTY_SERIES_PKID))
+                                                 .add(Projections.property(DataEntity.PROPERTY_VALUE)))
+                       .setMaxResults(maxResults)
+                       .list();
+    }
+
+    private Criteria createDatasetCriteria(TextDatasetEntity dataset, DbQuery query) {
+        Criteria criteria = getDefaultCriteria(query);
+        criteria.add(Restrictions.eq(DataEntity.PROPERTY_SERIES_PKID, dataset.getPkid()));
+        return query.addTimespanTo(criteria);
+    }
+
+}
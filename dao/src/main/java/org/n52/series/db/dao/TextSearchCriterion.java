@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.StringType;
+
+/**
+ * Full text restriction on a string property via PostgreSQL's <code>tsvector</code> matching. The text search
+ * configuration is <code>simple</code> (lower casing, no stemming, no stop words), so that an expression
+ * index like
+ *
+ * <pre>
+ * create index ... using gin (to_tsvector('simple', value))
+ * </pre>
+ *
+ * gets used. All words of the search text have to be contained.
+ */
+public class TextSearchCriterion implements Criterion {
+
+    private static final long serialVersionUID = -1720869271183738536L;
+
+    private static final String TEXT_SEARCH_CONFIG = "'simple'";
+
+    private final String propertyName;
+
+    private final String searchText;
+
+    public TextSearchCriterion(String propertyName, String searchText) {
+        this.propertyName = propertyName;
+        this.searchText = searchText;
+    }
+
+    @Override
+    public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        String column = criteriaQuery.getColumn(criteria, propertyName);
+        return "to_tsvector(" + TEXT_SEARCH_CONFIG + ", " + column + ")"
+                + " @@ plainto_tsquery(" + TEXT_SEARCH_CONFIG + ", ?)";
+    }
+
+    @Override
+    public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        return new TypedValue[] {
+            new TypedValue(StringType.INSTANCE, searchText)
+        };
+    }
+
+    @Override
+    public String toString() {
+        return propertyName + " matches '" + searchText + "'";
+    }
+
+}
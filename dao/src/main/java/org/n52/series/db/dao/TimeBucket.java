@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.Locale;
+
+import org.joda.time.DateTime;
+
+/**
+ * Calendar based time buckets data can be aggregated by. Bucket boundaries are the same as those of the
+ * PostgreSQL <code>date_trunc</code> function, i.e. weeks start on Monday.
+ */
+public enum TimeBucket {
+
+    HOUR {
+        @Override
+        public DateTime floor(DateTime time) {
+            return time.hourOfDay()
+                       .roundFloorCopy();
+        }
+
+        @Override
+        public DateTime next(DateTime bucketStart) {
+            return bucketStart.plusHours(1);
+        }
+    },
+
+    DAY {
+        @Override
+        public DateTime floor(DateTime time) {
+            return time.dayOfMonth()
+                       .roundFloorCopy();
+        }
+
+        @Override
+        public DateTime next(DateTime bucketStart) {
+            return bucketStart.plusDays(1);
+        }
+    },
+
+    WEEK {
+        @Override
+        public DateTime floor(DateTime time) {
+            return time.weekOfWeekyear()
+                       .roundFloorCopy();
+        }
+
+        @Override
+        public DateTime next(DateTime bucketStart) {
+            return bucketStart.plusWeeks(1);
+        }
+    },
+
+    MONTH {
+        @Override
+        public DateTime floor(DateTime time) {
+            return time.monthOfYear()
+                       .roundFloorCopy();
+        }
+
+        @Override
+        public DateTime next(DateTime bucketStart) {
+            return bucketStart.plusMonths(1);
+        }
+    },
+
+    YEAR {
+        @Override
+        public DateTime floor(DateTime time) {
+            return time.year()
+                       .roundFloorCopy();
+        }
+
+        @Override
+        public DateTime next(DateTime bucketStart) {
+            return bucketStart.plusYears(1);
+        }
+    };
+
+    /**
+     * @param time
+     *        the time to get the bucket for.
+     * @return the start of the bucket the given time falls into.
+     */
+    public abstract DateTime floor(DateTime time);
+
+    /**
+     * @param bucketStart
+     *        the start of a bucket.
+     * @return the start of the subsequent bucket, i.e. the (exclusive) end of the given one.
+     */
+    public abstract DateTime next(DateTime bucketStart);
+
+    /**
+     * @return the field name as expected by the PostgreSQL <code>date_trunc</code> function.
+     */
+    public String getFieldName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static TimeBucket fromString(String bucket) {
+        for (TimeBucket value : values()) {
+            if (value.getFieldName().equalsIgnoreCase(bucket)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported time bucket: " + bucket);
+    }
+
+}
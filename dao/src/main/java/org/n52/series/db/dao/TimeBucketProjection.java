@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.SimpleProjection;
+import org.hibernate.type.Type;
+
+/**
+ * Groups by the {@link TimeBucket} a timestamp property falls into. The bucket is computed by the database
+ * via the PostgreSQL <code>date_trunc</code> function.
+ */
+public class TimeBucketProjection extends SimpleProjection {
+
+    private static final long serialVersionUID = 4093640513346431279L;
+
+    private final String propertyName;
+
+    private final TimeBucket bucket;
+
+    public TimeBucketProjection(String propertyName, TimeBucket bucket) {
+        this.propertyName = propertyName;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public String toSqlString(Criteria criteria, int position, CriteriaQuery criteriaQuery)
+            throws HibernateException {
+        return toGroupSqlString(criteria, criteriaQuery) + " as y" + position + "_";
+    }
+
+    @Override
+    public String toGroupSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        String column = criteriaQuery.getColumn(criteria, propertyName);
+        return "date_trunc('" + bucket.getFieldName() + "', " + column + ")";
+    }
+
+    @Override
+    public Type[] getTypes(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        // same (zonal) timestamp type as the property itself
+        return new Type[] {
+            criteriaQuery.getType(criteria, propertyName)
+        };
+    }
+
+    @Override
+    public boolean isGrouped() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "date_trunc('" + bucket.getFieldName() + "', " + propertyName + ")";
+    }
+
+}
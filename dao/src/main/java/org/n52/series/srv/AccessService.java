@@ -29,7 +29,7 @@
 
 package org.n52.series.srv;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -81,10 +81,7 @@ public class AccessService<T extends ParameterOutput> extends ParameterService<T
     public OutputCollection<T> getParameters(String[] ids, IoParameters query) {
         try {
             DbQuery dbQuery = dbQueryFactory.createFrom(query);
-            List<T> results = new ArrayList<>();
-            for (String id : ids) {
-                results.add(repository.getInstance(id, dbQuery));
-            }
+            List<T> results = repository.getInstances(Arrays.asList(ids), dbQuery);
             return createOutputCollection(results);
         } catch (DataAccessException e) {
             throw new InternalServerException("Could not get multiple instance data.", e);
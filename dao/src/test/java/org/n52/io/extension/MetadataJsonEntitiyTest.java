@@ -58,4 +58,27 @@ public class MetadataJsonEntitiyTest {
         Assert.assertTrue(at.isObject());
     }
 
+    @Test
+    public void givenMetadataJsonEntity_whenGetJsonValueTwice_thenParsedOnlyOnce() {
+        MetadataJsonEntity entity = new MetadataJsonEntity();
+        entity.setPkid(2L);
+        entity.setValue("{\"key\":\"value\"}");
+
+        JsonNode first = entity.getJsonValue();
+        Assert.assertSame(first, entity.getJsonValue());
+    }
+
+    @Test
+    public void givenCachedMetadataJsonEntity_whenValueChanges_thenParsedAgain() {
+        MetadataJsonEntity entity = new MetadataJsonEntity();
+        entity.setPkid(3L);
+        entity.setValue("{\"key\":\"value\"}");
+        entity.getJsonValue();
+
+        entity.setValue("{\"key\":\"other\"}");
+        Assert.assertEquals("other", entity.getJsonValue()
+                                           .path("key")
+                                           .asText());
+    }
+
 }
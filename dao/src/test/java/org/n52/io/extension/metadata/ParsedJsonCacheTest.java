@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.io.extension.metadata;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class ParsedJsonCacheTest {
+
+    @Test
+    public void when_valueUnchanged_then_returnCachedTree() throws IOException {
+        JsonNode tree = ParsedJsonCache.getJsonTree(1L, "{\"depth\":5}");
+        assertThat(ParsedJsonCache.getJsonTree(1L, new String("{\"depth\":5}")), is(sameInstance(tree)));
+    }
+
+    @Test
+    public void when_valueChanged_then_parseAgain() throws IOException {
+        ParsedJsonCache.getJsonTree(2L, "{\"depth\":5}");
+        assertThat(ParsedJsonCache.getJsonTree(2L, "{\"depth\":7}").get("depth").asInt(), is(7));
+    }
+
+    @Test
+    public void when_changedValueHasSameHashAndLength_then_parseAgain() throws IOException {
+        // "Aa" and "BB" share their hash code
+        ParsedJsonCache.getJsonTree(3L, "\"Aa\"");
+        assertThat(ParsedJsonCache.getJsonTree(3L, "\"BB\"").asText(), is("BB"));
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.n52.io.response.dataset.category.CategoryValue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CategoryFrequencyDataTest {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    public void when_bucketsAdded_then_serializeOneRowPerBucket() throws IOException {
+        CategoryFrequencyData data = new CategoryFrequencyData();
+        data.addBucket(0L, 1000L, createCounts("rain", 3L, "snow", 1L));
+        data.addBucket(1000L, 2000L, Collections.singletonMap("rain", 2L));
+
+        JsonNode values = om.readTree(om.writeValueAsString(data))
+                            .get("values");
+        assertThat(values.size(), is(2));
+        assertThat(values.get(0).get("timestart").asLong(), is(0L));
+        assertThat(values.get(0).get("timeend").asLong(), is(1000L));
+        assertThat(values.get(0).get("frequencies").get("rain").asLong(), is(3L));
+        assertThat(values.get(0).get("frequencies").get("snow").asLong(), is(1L));
+        assertThat(values.get(1).get("timestart").asLong(), is(1000L));
+        assertThat(values.get(1).get("frequencies").get("rain").asLong(), is(2L));
+    }
+
+    @Test
+    public void when_noBuckets_then_serializeEmptyValues() throws IOException {
+        JsonNode values = om.readTree(om.writeValueAsString(new CategoryFrequencyData()))
+                            .get("values");
+        assertThat(values.isArray(), is(true));
+        assertThat(values.size(), is(0));
+    }
+
+    @Test
+    public void when_bucketsAdded_then_materializeOneValuePerCategory() {
+        CategoryFrequencyData data = new CategoryFrequencyData();
+        data.addBucket(0L, 1000L, createCounts("rain", 3L, "snow", 1L));
+        List<CategoryValue> values = data.getValues();
+        assertThat(values.size(), is(2));
+        assertThat(values.get(0).getValue(), is("rain"));
+        assertThat(values.get(1).getValue(), is("snow"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void when_addingMaterializedValues_then_throwException() {
+        new CategoryFrequencyData().addValues(new CategoryValue(0L, 1000L, "rain"));
+    }
+
+    private Map<String, Long> createCounts(String first, long firstCount, String second, long secondCount) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put(first, firstCount);
+        counts.put(second, secondCount);
+        return counts;
+    }
+
+}
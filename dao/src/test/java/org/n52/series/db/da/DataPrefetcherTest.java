@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.joda.time.Interval;
+import org.junit.Test;
+
+public class DataPrefetcherTest {
+
+    @Test
+    public void when_noPreviousAccess_then_noPrediction() {
+        assertThat(DataPrefetcher.predictNext(null, new Interval(10, 20)), is(nullValue()));
+    }
+
+    @Test
+    public void when_pagingForwards_then_predictFollowingWindow() {
+        Interval next = DataPrefetcher.predictNext(new Interval(0, 10), new Interval(10, 20));
+        assertThat(next, is(new Interval(20, 30)));
+    }
+
+    @Test
+    public void when_pagingBackwards_then_predictPrecedingWindow() {
+        Interval next = DataPrefetcher.predictNext(new Interval(20, 30), new Interval(10, 20));
+        assertThat(next, is(new Interval(0, 10)));
+    }
+
+    @Test
+    public void when_accessIsNotSequential_then_noPrediction() {
+        assertThat(DataPrefetcher.predictNext(new Interval(0, 10), new Interval(15, 25)), is(nullValue()));
+        assertThat(DataPrefetcher.predictNext(new Interval(0, 10), new Interval(0, 10)), is(nullValue()));
+    }
+
+}
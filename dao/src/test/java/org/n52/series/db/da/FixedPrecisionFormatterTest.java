@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FixedPrecisionFormatterTest {
+
+    @Test
+    public void when_halfValue_then_roundAwayFromZero() {
+        assertThat(FixedPrecisionFormatter.format(2345, 3, 2), is("2.35"));
+        assertThat(FixedPrecisionFormatter.format(-2345, 3, 2), is("-2.35"));
+    }
+
+    @Test
+    public void when_roundedToZero_then_noNegativeSign() {
+        assertThat(FixedPrecisionFormatter.format(-1, 3, 2), is("0.00"));
+    }
+
+    @Test
+    public void when_scaleIsIncreased_then_padWithZeros() {
+        assertThat(FixedPrecisionFormatter.format(12, 0, 3), is("12.000"));
+        assertThat(FixedPrecisionFormatter.format(5, 2, 4), is("0.0500"));
+    }
+
+    @Test
+    public void when_scientificNotationIsNeeded_then_fallback() {
+        assertThat(FixedPrecisionFormatter.format(0, 0, 10), is(nullValue()));
+    }
+
+    @Test
+    public void when_formatRandomValues_then_sameAsBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long unscaledValue = random.nextLong() % 1_000_000_000_000L;
+            int scale = random.nextInt(12) - 2;
+            int targetScale = random.nextInt(8);
+            String expected = BigDecimal.valueOf(unscaledValue, scale)
+                                        .setScale(targetScale, RoundingMode.HALF_UP)
+                                        .toString();
+            String formatted = FixedPrecisionFormatter.format(unscaledValue, scale, targetScale);
+            if (formatted != null) {
+                assertThat(formatted, is(expected));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.n52.io.response.PlatformType;
+
+public class PlatformRepositoryTest {
+
+    private static final String STATIONARY_INSITU = PlatformType.toInstance(false, true).createId(1L);
+
+    private static final String STATIONARY_REMOTE = PlatformType.toInstance(false, false).createId(2L);
+
+    private static final String MOBILE_INSITU = PlatformType.toInstance(true, true).createId(3L);
+
+    private static final String MOBILE_REMOTE = PlatformType.toInstance(true, false).createId(4L);
+
+    @Test
+    public void when_pageIsMixed_then_groupStationaryAndMobilePlatformsSeparately() {
+        List<String> page = Arrays.asList(STATIONARY_INSITU, MOBILE_INSITU, STATIONARY_REMOTE, MOBILE_REMOTE);
+        List<List<String>> groups = PlatformRepository.groupByDatasetFilter(page);
+        assertThat(groups, hasSize(2));
+        assertThat(toSets(groups), containsInAnyOrder(set(STATIONARY_INSITU, STATIONARY_REMOTE),
+                                                      set(MOBILE_INSITU, MOBILE_REMOTE)));
+    }
+
+    @Test
+    public void when_pageIsStationaryOnly_then_createSingleGroup() {
+        List<String> page = Arrays.asList(STATIONARY_INSITU, STATIONARY_REMOTE);
+        List<List<String>> groups = PlatformRepository.groupByDatasetFilter(page);
+        assertThat(toSets(groups), containsInAnyOrder(set(STATIONARY_INSITU, STATIONARY_REMOTE)));
+    }
+
+    @Test
+    public void when_pageIsEmpty_then_createNoGroup() {
+        List<List<String>> groups = PlatformRepository.groupByDatasetFilter(Collections.emptyList());
+        assertThat(groups, hasSize(0));
+    }
+
+    private static List<Set<String>> toSets(List<List<String>> groups) {
+        List<Set<String>> sets = new ArrayList<>();
+        groups.forEach(group -> sets.add(new HashSet<>(group)));
+        return sets;
+    }
+
+    private static Set<String> set(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+
+    private static final double[] QUANTILES = {
+        0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1
+    };
+
+    @Test
+    public void when_emptySketch_then_notANumber() {
+        assertThat(Double.isNaN(new QuantileSketch(ACCURACY).getQuantile(0.5)), is(true));
+    }
+
+    @Test
+    public void when_extremeQuantiles_then_exactMinimumAndMaximum() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(-3.7);
+        sketch.add(0);
+        sketch.add(12.25);
+        assertThat(sketch.getQuantile(0), is(-3.7));
+        assertThat(sketch.getQuantile(1), is(12.25));
+    }
+
+    @Test
+    public void when_randomValues_then_withinRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[10000];
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 100;
+            sketch.add(values[i]);
+        }
+        assertWithinAccuracy(sketch, values);
+    }
+
+    @Test
+    public void when_mergingSketches_then_sameAsSingleSketch() {
+        Random random = new Random(42);
+        double[] values = new double[10000];
+        QuantileSketch merged = new QuantileSketch(ACCURACY);
+        QuantileSketch single = new QuantileSketch(ACCURACY);
+        for (int day = 0; day < 10; day++) {
+            QuantileSketch daySketch = new QuantileSketch(ACCURACY);
+            for (int i = 0; i < 1000; i++) {
+                double value = random.nextDouble() * 50 + day;
+                values[day * 1000 + i] = value;
+                daySketch.add(value);
+                single.add(value);
+            }
+            merged.merge(daySketch);
+        }
+        assertThat(merged.getCount(), is(single.getCount()));
+        for (double quantile : QUANTILES) {
+            assertThat(merged.getQuantile(quantile), is(single.getQuantile(quantile)));
+        }
+        assertWithinAccuracy(merged, values);
+    }
+
+    private static void assertWithinAccuracy(QuantileSketch sketch, double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double quantile : QUANTILES) {
+            double expected = QuantileSketch.getExactQuantile(sorted, quantile);
+            double error = Math.abs(sketch.getQuantile(quantile) - expected);
+            assertThat(error, lessThanOrEqualTo(ACCURACY * Math.abs(expected) + 1e-9));
+        }
+    }
+
+}
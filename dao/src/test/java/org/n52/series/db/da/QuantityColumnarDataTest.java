@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Test;
+import org.n52.io.response.dataset.quantity.QuantityValue;
+
+public class QuantityColumnarDataTest {
+
+    @Test
+    public void when_valuesAdded_then_materializeInOrder() {
+        QuantityColumnarData data = new QuantityColumnarData(1, 2, false);
+        data.addValue(0L, 1000L, new BigDecimal("1.25"), null);
+        data.addValue(0L, 2000L, new BigDecimal("-3"), 2500L);
+        List<QuantityValue> values = data.getValues();
+        assertThat(values.size(), is(2));
+        assertThat(values.get(0).getTimestamp(), is(1000L));
+        assertThat(values.get(0).getValue(), is(new BigDecimal("1.25")));
+        assertThat(values.get(1).getTimestamp(), is(2000L));
+        assertThat(values.get(1).getValue(), is(new BigDecimal("-3.00")));
+    }
+
+    @Test
+    public void when_capacityExceeded_then_keepAllValues() {
+        QuantityColumnarData data = new QuantityColumnarData(0, 0, false);
+        for (int i = 0; i < 100; i++) {
+            data.addValue(0L, i, BigDecimal.valueOf(i), null);
+        }
+        assertThat(data.size(), is(100));
+        assertThat(data.getValue(99), is(new BigDecimal("99")));
+    }
+
+    @Test
+    public void when_noDataValueAdded_then_trackInBitmap() {
+        QuantityColumnarData data = new QuantityColumnarData(2, 1, false);
+        data.addValue(0L, 1000L, null, null);
+        data.addValue(0L, 2000L, BigDecimal.ONE, null);
+        assertThat(data.isNoValue(0), is(true));
+        assertThat(data.isNoValue(1), is(false));
+        assertThat(data.getValue(0), is(nullValue()));
+        assertThat(data.formatValue(0), is(nullValue()));
+        assertThat(data.createValue(0).getValue(), is(nullValue()));
+    }
+
+    @Test
+    public void when_valueHasMoreDecimals_then_roundHalfUpToScale() {
+        QuantityColumnarData data = new QuantityColumnarData(3, 1, false);
+        data.addValue(0L, 1000L, new BigDecimal("2.25"), null);
+        data.addValue(0L, 2000L, new BigDecimal("-2.25"), null);
+        data.addValue(0L, 3000L, new BigDecimal("2.24"), null);
+        assertThat(data.getValue(0), is(new BigDecimal("2.3")));
+        assertThat(data.getValue(1), is(new BigDecimal("-2.3")));
+        assertThat(data.getValue(2), is(new BigDecimal("2.2")));
+        assertThat(data.formatValue(0), is("2.3"));
+    }
+
+    @Test
+    public void when_valueExceedsLongPrecision_then_keepExactValue() {
+        QuantityColumnarData data = new QuantityColumnarData(1, 2, false);
+        BigDecimal large = new BigDecimal("12345678901234567890.125");
+        data.addValue(0L, 1000L, large, null);
+        assertThat(data.getValue(0), is(new BigDecimal("12345678901234567890.13")));
+        assertThat(data.formatValue(0), is(nullValue()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void when_addingMaterializedValues_then_throwException() {
+        new QuantityColumnarData(1, 2, false).addValues(new QuantityValue(1000L, BigDecimal.ONE));
+    }
+
+}
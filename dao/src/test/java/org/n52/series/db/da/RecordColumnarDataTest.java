@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.n52.io.response.dataset.record.RecordValue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RecordColumnarDataTest {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    public void when_recordsShareKeys_then_detectSchemaOnce() {
+        RecordColumnarData data = new RecordColumnarData(2, false);
+        data.addValue(0L, 1000L, createRecord(1.5, "north"), null);
+        data.addValue(0L, 2000L, createRecord(2.5, "south"), 2500L);
+        assertThat(data.getSchema(), contains("temperature", "direction"));
+        assertThat(data.matchesSchema(0), is(true));
+        assertThat(data.matchesSchema(1), is(true));
+        assertThat(data.getValue(1), is(createRecord(2.5, "south")));
+        assertThat(data.createValue(1).getResultTime(), is(2500L));
+    }
+
+    @Test
+    public void when_recordHasOtherKeys_then_keepAsIrregular() {
+        RecordColumnarData data = new RecordColumnarData(2, false);
+        data.addValue(0L, 1000L, createRecord(1.5, "north"), null);
+        Map<String, Object> irregular = Collections.singletonMap("humidity", 80);
+        data.addValue(0L, 2000L, irregular, null);
+        assertThat(data.matchesSchema(1), is(false));
+        assertThat(data.getValue(1), is(irregular));
+    }
+
+    @Test
+    public void when_noDataValueAdded_then_trackInBitmap() {
+        RecordColumnarData data = new RecordColumnarData(2, false);
+        data.addValue(0L, 1000L, null, null);
+        data.addValue(0L, 2000L, createRecord(1.5, "north"), null);
+        assertThat(data.isNoValue(0), is(true));
+        assertThat(data.matchesSchema(0), is(false));
+        assertThat(data.getValue(0), is(nullValue()));
+        assertThat(data.createValue(0).getValue(), is(nullValue()));
+        assertThat(data.getSchema(), contains("temperature", "direction"));
+    }
+
+    @Test
+    public void when_capacityExceeded_then_keepAllValues() {
+        RecordColumnarData data = new RecordColumnarData(0, true);
+        for (int i = 0; i < 100; i++) {
+            data.addValue(i, i + 1, createRecord(i, "north"), (long) i);
+        }
+        assertThat(data.size(), is(100));
+        assertThat(data.getValue(99), is(createRecord(99, "north")));
+        assertThat(data.createValue(99).getResultTime(), is(99L));
+    }
+
+    @Test
+    public void when_serialized_then_equalToMaterializedValues() throws IOException {
+        RecordColumnarData data = new RecordColumnarData(3, false);
+        data.addValue(0L, 1000L, createRecord(1.5, "north"), null);
+        data.addValue(0L, 2000L, Collections.singletonMap("humidity", 80), 2500L);
+        data.addValue(0L, 3000L, null, null);
+
+        JsonNode values = om.readTree(om.writeValueAsString(data))
+                            .get("values");
+        List<RecordValue> materialized = new ArrayList<>(data.getValues());
+        assertThat(values, is(om.readTree(om.writeValueAsString(materialized))));
+        assertThat(values.get(0).get("value").get("temperature").asDouble(), is(1.5));
+        assertThat(values.get(0).get("value").get("direction").asText(), is("north"));
+        assertThat(values.get(1).get("value").get("humidity").asInt(), is(80));
+    }
+
+    @Test
+    public void when_noValues_then_serializeEmptyValues() throws IOException {
+        JsonNode values = om.readTree(om.writeValueAsString(new RecordColumnarData(0, false)))
+                            .get("values");
+        assertThat(values.isArray(), is(true));
+        assertThat(values.size(), is(0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void when_addingMaterializedValues_then_throwException() {
+        new RecordColumnarData(1, false).addValues(new RecordValue(1000L, createRecord(1.5, "north")));
+    }
+
+    private Map<String, Object> createRecord(double temperature, String direction) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("temperature", temperature);
+        record.put("direction", direction);
+        return record;
+    }
+
+}
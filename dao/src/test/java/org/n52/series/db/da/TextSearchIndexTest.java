@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.da;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TextSearchIndexTest {
+
+    private final TextSearchIndex index = new TextSearchIndex();
+
+    @Test
+    public void when_tokenizing_then_splitAtNonAlphanumericsAndLowerCase() {
+        assertThat(TextSearchIndex.tokenize("Sensor-42 failed: Überlauf!"),
+                   contains("sensor", "42", "failed", "überlauf"));
+    }
+
+    @Test
+    public void when_tokenizingRepeatedWords_then_keepFirstOccurrenceOnly() {
+        assertThat(TextSearchIndex.tokenize("Rain, rain  RAIN"), contains("rain"));
+    }
+
+    @Test
+    public void when_tokenizingNullOrSeparatorsOnly_then_returnNoWords() {
+        assertThat(TextSearchIndex.tokenize(null), is(empty()));
+        assertThat(TextSearchIndex.tokenize(" -- "), is(empty()));
+    }
+
+    @Test
+    public void when_textContainsAllWords_then_match() {
+        assertThat(TextSearchIndex.containsAll("Pump 3 stopped", TextSearchIndex.tokenize("stopped pump")),
+                   is(true));
+        assertThat(TextSearchIndex.containsAll("Pump 3 stopped", TextSearchIndex.tokenize("pump started")),
+                   is(false));
+        assertThat(TextSearchIndex.containsAll("Pump 3 stopped", TextSearchIndex.tokenize("")), is(false));
+    }
+
+    @Test
+    public void when_notReady_then_returnNull() {
+        index.add(1L, 10L, "pump stopped");
+        assertThat(index.search(10L, "pump"), is(nullValue()));
+    }
+
+    @Test
+    public void when_searchingSeveralWords_then_matchObservationsContainingAll() {
+        index.add(1L, 10L, "Pump stopped");
+        index.add(2L, 10L, "pump started");
+        index.add(3L, 10L, "stopped valve, pump");
+        index.add(4L, 11L, "pump stopped");
+        assertThat(index.searchIndexed(10L, "PUMP stopped"), containsInAnyOrder(1L, 3L));
+        assertThat(index.searchIndexed(10L, "pump"), containsInAnyOrder(1L, 2L, 3L));
+    }
+
+    @Test
+    public void when_observationEdited_then_matchNewTextOnlyAfterReindex() {
+        index.add(1L, 10L, "pump stopped");
+        index.add(2L, 10L, "pump started");
+        index.replace(10L, Arrays.asList(new Object[] {1L, 10L, "valve opened"},
+                                         new Object[] {2L, 10L, "pump started"}));
+        assertThat(index.searchIndexed(10L, "stopped"), is(empty()));
+        assertThat(index.searchIndexed(10L, "pump"), containsInAnyOrder(2L));
+        assertThat(index.searchIndexed(10L, "valve"), containsInAnyOrder(1L));
+    }
+
+    @Test
+    public void when_indexedTextIsOutdated_then_currentTextDecides() {
+        index.add(1L, 10L, "pump stopped");
+        assertThat(index.searchIndexed(10L, "pump stopped"), containsInAnyOrder(1L));
+        // the indexed candidate is checked against its current text
+        assertThat(TextSearchIndex.containsAll("valve opened", TextSearchIndex.tokenize("pump stopped")),
+                   is(false));
+    }
+
+    @Test
+    public void when_wordIsUnknown_then_matchNothing() {
+        index.add(1L, 10L, "pump stopped");
+        assertThat(index.searchIndexed(10L, "pump valve"), is(empty()));
+        assertThat(index.searchIndexed(11L, "pump"), is(empty()));
+        assertThat(index.searchIndexed(10L, "!"), is(empty()));
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.dao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.time.Interval;
+import org.junit.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+
+public class DataChunkCacheTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private final DataChunkCache cache = new DataChunkCache("PT1H", 100);
+
+    @Test
+    public void when_timespanIsShifted_then_chunksAreAligned() {
+        Interval timespan = new Interval(HOUR + 10, 3 * HOUR + 20);
+        assertThat(cache.getChunkStarts(timespan), contains(HOUR, 2 * HOUR, 3 * HOUR));
+    }
+
+    @Test
+    public void when_timespanEndsOnChunkBound_then_includeAdjacentChunk() {
+        Interval timespan = new Interval(HOUR, 2 * HOUR);
+        assertThat(cache.getChunkStarts(timespan), contains(HOUR, 2 * HOUR));
+    }
+
+    @Test
+    public void when_chunkIsOpen_then_doNotCache() {
+        long openChunk = cache.alignToChunk(System.currentTimeMillis());
+        cache.putChunk(1L, DataEntity.class, openChunk, Collections.singletonList(new QuantityDataEntity()));
+        assertThat(cache.getChunk(1L, DataEntity.class, openChunk), is(nullValue()));
+    }
+
+    @Test
+    public void when_chunkEndedWithinClosingGrace_then_doNotCache() {
+        long recentChunk = cache.alignToChunk(System.currentTimeMillis()) - HOUR;
+        cache.putChunk(1L, DataEntity.class, recentChunk, Collections.singletonList(new QuantityDataEntity()));
+        assertThat(cache.getChunk(1L, DataEntity.class, recentChunk), is(nullValue()));
+    }
+
+    @Test
+    public void when_chunkExceedsMaximumObservations_then_doNotKeep() {
+        List<QuantityDataEntity> observations = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            observations.add(new QuantityDataEntity());
+        }
+        cache.putChunk(1L, DataEntity.class, HOUR, observations);
+        assertThat(cache.getChunk(1L, DataEntity.class, HOUR), is(nullValue()));
+    }
+
+    @Test
+    public void when_queryFiltersByTimespanOnly_then_cacheable() {
+        assertThat(cache.isCacheable(createQuery(createTimespanParameters())), is(true));
+    }
+
+    @Test
+    public void when_queryIsExpanded_then_notCacheable() {
+        IoParameters parameters = createTimespanParameters().extendWith("expanded", "true");
+        assertThat(cache.isCacheable(createQuery(parameters)), is(false));
+    }
+
+    @Test
+    public void when_querySelectsFields_then_notCacheable() {
+        IoParameters parameters = createTimespanParameters().extendWith("fields", "value");
+        assertThat(cache.isCacheable(createQuery(parameters)), is(false));
+    }
+
+    @Test
+    public void when_datasetEvicted_then_chunksAreRemoved() {
+        cache.putChunk(1L, DataEntity.class, HOUR, Collections.singletonList(new QuantityDataEntity()));
+        cache.putChunk(2L, DataEntity.class, HOUR, Collections.singletonList(new QuantityDataEntity()));
+        cache.evict(1L);
+        List<DataEntity< ? >> evicted = cache.getChunk(1L, DataEntity.class, HOUR);
+        List<DataEntity< ? >> kept = cache.getChunk(2L, DataEntity.class, HOUR);
+        assertThat(evicted, is(nullValue()));
+        assertThat(kept.size(), is(1));
+    }
+
+    private IoParameters createTimespanParameters() {
+        return IoParameters.createDefaults()
+                           .extendWith("timespan", "2017-01-01T00:00:00Z/2017-01-02T00:00:00Z");
+    }
+
+    private DbQuery createQuery(IoParameters parameters) {
+        return new DefaultDbQueryFactory().createFrom(parameters);
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projection;
+import org.hibernate.transform.ResultTransformer;
+import org.hibernate.transform.Transformers;
+import org.junit.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.beans.CategoryDataEntity;
+import org.n52.series.db.beans.CountDataEntity;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.series.db.beans.TextDataEntity;
+
+public class DataDaoTest {
+
+    private final DbQueryFactory dbQueryFactory = new DefaultDbQueryFactory();
+
+    @Test
+    public void when_fieldsSelectedForQuantity_then_projectionRootedAtQuantityData() {
+        assertProjectionRootedAt("quantity", QuantityDataEntity.class);
+    }
+
+    @Test
+    public void when_fieldsSelectedForCount_then_projectionRootedAtCountData() {
+        assertProjectionRootedAt("count", CountDataEntity.class);
+    }
+
+    @Test
+    public void when_fieldsSelectedForText_then_projectionRootedAtTextData() {
+        assertProjectionRootedAt("text", TextDataEntity.class);
+    }
+
+    @Test
+    public void when_fieldsSelectedForCategory_then_projectionRootedAtCategoryData() {
+        assertProjectionRootedAt("category", CategoryDataEntity.class);
+    }
+
+    @Test
+    public void when_noFieldsSelected_then_entitiesLoadedFromDaoType() {
+        RecordingSession recorder = new RecordingSession();
+        new DataDao<>(recorder.session).getAllInstancesFor(createDataset("quantity"),
+                                                           dbQueryFactory.createFrom(IoParameters.createDefaults()));
+        assertThat(recorder.criteriaRoots, is(Collections.<Class< ? >> singletonList(DataEntity.class)));
+        assertThat(recorder.projection, is(nullValue()));
+    }
+
+    @Test
+    public void when_notExpanded_then_parametersNotJoined() {
+        assertParametersFetchedVia(IoParameters.createDefaults(), FetchMode.SELECT);
+    }
+
+    @Test
+    public void when_expanded_then_parametersFetchedAsMapped() {
+        assertParametersFetchedVia(IoParameters.createDefaults()
+                                               .extendWith("expanded", "true"),
+                                   null);
+    }
+
+    @Test
+    public void when_expandedWithoutParametersField_then_parametersNotJoined() {
+        assertParametersFetchedVia(IoParameters.createDefaults()
+                                               .extendWith("expanded", "true")
+                                               .extendWith("fields", "value"),
+                                   FetchMode.SELECT);
+    }
+
+    private void assertParametersFetchedVia(IoParameters parameters, FetchMode expected) {
+        RecordingSession recorder = new RecordingSession();
+        new DataDao<>(recorder.session).getDefaultCriteria(dbQueryFactory.createFrom(parameters));
+        assertThat(recorder.fetchModes.get(DataEntity.PROPERTY_PARAMETERS), is(expected));
+    }
+
+    private void assertProjectionRootedAt(String valueType, Class< ? > expectedRoot) {
+        RecordingSession recorder = new RecordingSession();
+        DbQuery query = dbQueryFactory.createFrom(IoParameters.createDefaults()
+                                                              .extendWith("fields", "resultTime"));
+        new DataDao<>(recorder.session).getAllInstancesFor(createDataset(valueType), query);
+        assertThat(recorder.criteriaRoots, is(Collections.<Class< ? >> singletonList(expectedRoot)));
+        assertThat(recorder.projection, is(notNullValue()));
+        assertThat(recorder.transformer, is(Transformers.aliasToBean(expectedRoot)));
+    }
+
+    private DatasetEntity< ? > createDataset(String valueType) {
+        DatasetEntity< ? > dataset = new DatasetEntity<>();
+        dataset.setPkid(1L);
+        dataset.setValueType(valueType);
+        return dataset;
+    }
+
+    /**
+     * Records the criteria created via a session stub, no database is needed.
+     */
+    private static final class RecordingSession {
+
+        private final List<Class< ? >> criteriaRoots = new ArrayList<>();
+
+        private final Criteria criteria;
+
+        private final Session session;
+
+        private Projection projection;
+
+        private ResultTransformer transformer;
+
+        private final Map<String, FetchMode> fetchModes = new HashMap<>();
+
+        private RecordingSession() {
+            criteria = createProxy(Criteria.class, this::onCriteriaCall);
+            session = createProxy(Session.class, this::onSessionCall);
+        }
+
+        private Object onCriteriaCall(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "setProjection":
+                    projection = (Projection) args[0];
+                    return proxy;
+                case "setFetchMode":
+                    fetchModes.put((String) args[0], (FetchMode) args[1]);
+                    return proxy;
+                case "setResultTransformer":
+                    transformer = (ResultTransformer) args[0];
+                    return proxy;
+                case "list":
+                    return Collections.emptyList();
+                default:
+                    // supports chaining
+                    return method.getReturnType().isInstance(proxy)
+                            ? proxy
+                            : null;
+            }
+        }
+
+        private Object onSessionCall(Object proxy, Method method, Object[] args) {
+            if ("createCriteria".equals(method.getName()) && args[0] instanceof Class) {
+                criteriaRoots.add((Class< ? >) args[0]);
+                return criteria;
+            }
+            return null;
+        }
+
+        private static <T> T createProxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class< ? >[] {
+                type
+            }, handler));
+        }
+
+    }
+
+}
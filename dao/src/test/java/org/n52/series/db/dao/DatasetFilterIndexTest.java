@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+
+package org.n52.series.db.dao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.beans.DatasetEntity;
+
+public class DatasetFilterIndexTest {
+
+    private static final String QUANTITY = "quantity";
+
+    private DatasetFilterIndex index;
+
+    private List<Object[]> datasets;
+
+    @Before
+    public void setUp() {
+        index = new DatasetFilterIndex("PT5M", 2);
+        datasets = new ArrayList<>();
+        // dataset, procedure, phenomenon, offering, feature, category, value type, mobile, insitu
+        datasets.add(new Object[] {1L, 10L, 20L, 30L, 40L, 50L, QUANTITY, false, true});
+        datasets.add(new Object[] {2L, 11L, 21L, 30L, 41L, 50L, QUANTITY, false, false});
+        datasets.add(new Object[] {3L, 12L, 20L, 31L, 42L, 50L, QUANTITY, true, true});
+        datasets.add(new Object[] {4L, 13L, 21L, 31L, 43L, 50L, QUANTITY, null, null});
+        update();
+    }
+
+    @Test
+    public void when_noFilterIsSet_then_leaveQueryToDatabase() {
+        assertThat(getFeatureIds(createQuery(Parameters.FILTER_PLATFORM_TYPES, "all")), is(nullValue()));
+    }
+
+    @Test
+    public void when_tooManyIdsMatch_then_leaveQueryToDatabase() {
+        DbQuery query = createQuery(Parameters.PHENOMENA, "20", "21");
+        query = new DbQuery(query.getParameters()
+                                 .extendWith(Parameters.FILTER_PLATFORM_TYPES, "all"));
+        assertThat(getFeatureIds(query), is(nullValue()));
+    }
+
+    @Test
+    public void when_filteringStationaryRemote_then_matchStationaryRemoteDatasetsOnly() {
+        Set<Long> features = getFeatureIds(createQuery(Parameters.FILTER_PLATFORM_TYPES, "stationary", "remote"));
+        assertThat(features, containsInAnyOrder(41L));
+    }
+
+    @Test
+    public void when_filteringMobileInsitu_then_matchMobileInsituDatasetsOnly() {
+        Set<Long> features = getFeatureIds(createQuery(Parameters.FILTER_PLATFORM_TYPES, "mobile", "insitu"));
+        assertThat(features, containsInAnyOrder(42L));
+    }
+
+    @Test
+    public void when_platformFlagsAreNull_then_matchNoPlatformType() {
+        Set<Long> features = getFeatureIds(createQuery(Parameters.FILTER_PLATFORM_TYPES, "stationary", "insitu"));
+        assertThat(features, containsInAnyOrder(40L));
+    }
+
+    @Test
+    public void when_platformFlagsAreNull_then_matchDetachedFilters() {
+        DbQuery query = createQuery(Parameters.FILTER_PLATFORM_TYPES, "all");
+        query = new DbQuery(query.getParameters()
+                                 .extendWith(Parameters.PROCEDURES, "13"));
+        assertThat(getFeatureIds(query), containsInAnyOrder(43L));
+    }
+
+    @Test
+    public void when_filteringMultipleProperties_then_intersectPerDataset() {
+        DbQuery query = createQuery(Parameters.PHENOMENA, "20");
+        query = new DbQuery(query.getParameters()
+                                 .extendWith(Parameters.OFFERINGS, "31")
+                                 .extendWith(Parameters.FILTER_PLATFORM_TYPES, "all"));
+        assertThat(getFeatureIds(query), containsInAnyOrder(42L));
+    }
+
+    @Test
+    public void when_filtersMatchOnDifferentDatasets_then_matchNothing() {
+        DbQuery query = createQuery(Parameters.PHENOMENA, "20");
+        query = new DbQuery(query.getParameters()
+                                 .extendWith(Parameters.PROCEDURES, "11")
+                                 .extendWith(Parameters.FILTER_PLATFORM_TYPES, "all"));
+        assertThat(getFeatureIds(query), is(empty()));
+    }
+
+    @Test
+    public void when_hierarchyHasSeveralLevels_then_includeAllDescendants() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(11L, ids(10L));
+        parents.put(12L, ids(11L));
+        update(parents);
+        assertThat(index.getSelfAndDescendantIds(DatasetEntity.PROPERTY_PROCEDURE, ids(10L)),
+                   containsInAnyOrder(10L, 11L, 12L));
+        assertThat(index.getSelfAndDescendantIds(DatasetEntity.PROPERTY_PROCEDURE, ids(12L)),
+                   containsInAnyOrder(12L));
+    }
+
+    @Test
+    public void when_filteringByAncestor_then_matchDatasetsOfAllDescendants() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(12L, ids(11L));
+        parents.put(13L, ids(12L));
+        update(parents);
+        DbQuery query = createQuery(Parameters.PROCEDURES, "12");
+        query = new DbQuery(query.getParameters()
+                                 .extendWith(Parameters.FILTER_PLATFORM_TYPES, "all"));
+        assertThat(getFeatureIds(query), containsInAnyOrder(42L, 43L));
+    }
+
+    @Test(timeout = 5000)
+    public void when_hierarchyIsCyclic_then_terminateWithClosure() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(10L, ids(12L));
+        parents.put(11L, ids(10L));
+        parents.put(12L, ids(11L));
+        update(parents);
+        assertThat(index.getSelfAndDescendantIds(DatasetEntity.PROPERTY_PROCEDURE, ids(11L)),
+                   containsInAnyOrder(10L, 11L, 12L));
+    }
+
+    @Test
+    public void when_entityIsItsOwnParent_then_ignoreSelfReference() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(10L, ids(10L, 11L));
+        update(parents);
+        assertThat(index.getSelfAndDescendantIds(DatasetEntity.PROPERTY_PROCEDURE, ids(11L)),
+                   containsInAnyOrder(10L, 11L));
+        assertThat(index.getSelfAndDescendantIds(DatasetEntity.PROPERTY_PROCEDURE, ids(10L)),
+                   containsInAnyOrder(10L));
+    }
+
+    private void update() {
+        update(Collections.emptyMap());
+    }
+
+    private void update(Map<Long, Set<Long>> procedureParents) {
+        index.update(datasets, procedureParents, Collections.emptyMap());
+    }
+
+    private static Set<Long> ids(Long... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    private Set<Long> getFeatureIds(DbQuery query) {
+        return index.getMatchingIds(query, DatasetEntity.PROPERTY_FEATURE, true);
+    }
+
+    private DbQuery createQuery(String parameter, String... values) {
+        return new DbQuery(IoParameters.createDefaults()
+                                       .extendWith(parameter, values));
+    }
+
+}
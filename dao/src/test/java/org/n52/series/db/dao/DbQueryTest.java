@@ -29,8 +29,12 @@
 
 package org.n52.series.db.dao;
 
+import java.math.BigDecimal;
+
 import org.junit.Assert;
 import org.junit.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.web.exception.BadRequestException;
 
 public class DbQueryTest {
 
@@ -41,4 +45,90 @@ public class DbQueryTest {
         Assert.assertNotNull(dbQueryFactory.createFrom(null));
     }
 
+    @Test(expected = BadRequestException.class)
+    public void when_missingThreshold_then_badRequest() {
+        dbQueryFactory.createFrom(IoParameters.createDefaults())
+                      .getThreshold();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_malformedThreshold_then_badRequest() {
+        createQuery(DbQuery.THRESHOLD, "ten").getThreshold();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_malformedMinDuration_then_badRequest() {
+        createQuery(DbQuery.MIN_DURATION, "1 hour").getMinDuration();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_malformedQuantiles_then_badRequest() {
+        createQuery(DbQuery.QUANTILES, "0.5,median").getQuantiles();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_quantileOutOfRange_then_badRequest() {
+        createQuery(DbQuery.QUANTILES, "95").getQuantiles();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_malformedVerticalBound_then_badRequest() {
+        createQuery(DbQuery.VERTICAL_MIN, "10m").getVerticalMin();
+    }
+
+    @Test
+    public void when_verticalBound_then_parsedAsDecimal() {
+        Assert.assertEquals(new BigDecimal("-2.5"), createQuery(DbQuery.VERTICAL_MAX, " -2.5").getVerticalMax());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_malformedResampleStep_then_badRequest() {
+        createQuery(DbQuery.RESAMPLE_STEP, "hourly").getResampling();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_zeroResampleStep_then_badRequest() {
+        createQuery(DbQuery.RESAMPLE_STEP, "PT0S").getResampling();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_unknownInterpolation_then_badRequest() {
+        dbQueryFactory.createFrom(IoParameters.createDefaults()
+                                              .extendWith(DbQuery.RESAMPLE_STEP, "PT1H")
+                                              .extendWith(DbQuery.RESAMPLE_INTERPOLATION, "cubic"))
+                      .getResampling();
+    }
+
+    @Test
+    public void when_thresholdDirection_then_parsedCaseInsensitive() {
+        Assert.assertTrue(createQuery(DbQuery.THRESHOLD_DIRECTION, "Below").isThresholdBelow());
+        Assert.assertFalse(createQuery(DbQuery.THRESHOLD_DIRECTION, "ABOVE").isThresholdBelow());
+        Assert.assertFalse(new DbQuery(IoParameters.createDefaults()).isThresholdBelow());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_unknownThresholdDirection_then_badRequest() {
+        createQuery(DbQuery.THRESHOLD_DIRECTION, "lower").isThresholdBelow();
+    }
+
+    @Test
+    public void when_aggregationBucket_then_parsedCaseInsensitive() {
+        Assert.assertEquals(TimeBucket.WEEK, createQuery(DbQuery.AGGREGATION_BUCKET, "Week").getTimeBucket());
+    }
+
+    @Test
+    public void when_noAggregationBucket_then_day() {
+        Assert.assertEquals(TimeBucket.DAY, new DbQuery(IoParameters.createDefaults()).getTimeBucket());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_unknownAggregationBucket_then_badRequest() {
+        createQuery(DbQuery.AGGREGATION_BUCKET, "fortnight").getTimeBucket();
+    }
+
+    private DbQuery createQuery(String parameter, String value) {
+        return dbQueryFactory.createFrom(IoParameters.createDefaults()
+                                                     .extendWith(parameter, value));
+    }
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.joda.time.Interval;
+import org.junit.Test;
+import org.n52.series.db.dao.Resampling.GapFill;
+import org.n52.series.db.dao.Resampling.Interpolation;
+import org.n52.web.exception.BadRequestException;
+
+public class ResamplingTest {
+
+    private static final long STEP = 60000;
+
+    @Test
+    public void when_startNotAligned_then_firstGridPointIsNextMultipleOfStep() {
+        Resampling resampling = new Resampling(STEP, Interpolation.LINEAR, GapFill.INTERPOLATE, STEP);
+        assertThat(resampling.getFirstGridPoint(new Interval(STEP + 1, 10 * STEP)), is(2 * STEP));
+        assertThat(resampling.getFirstGridPoint(new Interval(STEP, 10 * STEP)), is(STEP));
+    }
+
+    @Test
+    public void when_gapsAreInterpolated_then_noGap() {
+        Resampling resampling = new Resampling(STEP, Interpolation.LINEAR, GapFill.INTERPOLATE, STEP);
+        assertThat(resampling.isGap(0, 100 * STEP), is(false));
+    }
+
+    @Test
+    public void when_observationsTooFarApart_then_gap() {
+        Resampling resampling = new Resampling(STEP, Interpolation.PREVIOUS, GapFill.NULL, 2 * STEP);
+        assertThat(resampling.isGap(0, 2 * STEP), is(false));
+        assertThat(resampling.isGap(0, 2 * STEP + 1), is(true));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void when_tooManyGridPoints_then_exception() {
+        Resampling resampling = new Resampling(1, Interpolation.NEAREST, GapFill.OMIT, 1);
+        resampling.assertGridSize(new Interval(0, Resampling.MAXIMUM_GRID_POINTS));
+    }
+
+    @Test
+    public void when_parsingModes_then_caseInsensitive() {
+        assertThat(Interpolation.fromString("Linear"), is(Interpolation.LINEAR));
+        assertThat(GapFill.fromString("null"), is(GapFill.NULL));
+    }
+
+}